@@ -0,0 +1,592 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2016, ConfigHub, LLC (support@configHub.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+
+package com.confighub.client;
+
+import com.confighub.client.error.ConfigHubException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Compact, versioned binary format of a snapshot, read through a memory mapped file.  Values are
+ * decoded lazily on first lookup, so time to first read does not depend on the repository size.
+ *
+ * All numbers are big-endian.  Strings are an int length (-1 for null) followed by UTF-8 bytes.
+ *
+ *   header       int magic "CHBS", short version, short flags,
+ *                int property count, int file count,
+ *                string context, account, repo, eTag, lastModified
+ *   index        property entries, then file entries, each:
+ *                int key offset, int key length, int value offset
+ *                entries are sorted by unsigned UTF-8 bytes of the key
+ *   data         key bytes and values at offsets from the index
+ *
+ *   value        byte type, byte flags (1 deprecated, 2 encrypted, 4 context),
+ *                [string encryption group], [string context], payload of the type
+ *   file         string content
+ */
+final class BinarySnapshot
+{
+    static final int MAGIC = 0x43484253;
+    static final short VERSION = 1;
+
+    private static final int ENTRY_SIZE = 12;
+
+    private static final byte TEXT = 0;
+    private static final byte BOOLEAN = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte MAP = 6;
+    private static final byte LIST = 7;
+
+    private static final byte DEPRECATED = 1;
+    private static final byte ENCRYPTED = 2;
+    private static final byte CONTEXT = 4;
+
+    private BinarySnapshot() { }
+
+    //------------------------------------------------------------------------------------------------
+    // Write
+    //------------------------------------------------------------------------------------------------
+
+    /*
+     * Write snapshot to a temporary file, and move it in place of the output file.
+     */
+    static void write(final Snapshot snapshot, final File output)
+            throws IOException
+    {
+        byte[][] keys = sortedKeys(snapshot.data.keySet());
+        byte[][] names = sortedKeys(snapshot.fileContents.keySet());
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream h = new DataOutputStream(header);
+        h.writeInt(MAGIC);
+        h.writeShort(VERSION);
+        h.writeShort(0);
+        h.writeInt(keys.length);
+        h.writeInt(names.length);
+        writeString(h, snapshot.context);
+        writeString(h, snapshot.account);
+        writeString(h, snapshot.repositoryName);
+        writeString(h, snapshot.eTag);
+        writeString(h, snapshot.lastModified);
+        h.flush();
+
+        int dataStart = header.size() + (keys.length + names.length) * ENTRY_SIZE;
+
+        ByteArrayOutputStream index = new ByteArrayOutputStream((keys.length + names.length) * ENTRY_SIZE);
+        DataOutputStream x = new DataOutputStream(index);
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        DataOutputStream d = new DataOutputStream(data);
+
+        for (byte[] key : keys)
+        {
+            x.writeInt(dataStart + d.size());
+            x.writeInt(key.length);
+            d.write(key);
+
+            x.writeInt(dataStart + d.size());
+            writeValue(d, snapshot.data.get(new String(key, StandardCharsets.UTF_8)));
+        }
+
+        for (byte[] name : names)
+        {
+            x.writeInt(dataStart + d.size());
+            x.writeInt(name.length);
+            d.write(name);
+
+            x.writeInt(dataStart + d.size());
+            writeString(d, snapshot.fileContents.get(new String(name, StandardCharsets.UTF_8)));
+        }
+
+        x.flush();
+        d.flush();
+
+        File parent = output.getAbsoluteFile().getParentFile();
+        parent.mkdirs();
+        File tmp = File.createTempFile(output.getName(), ".tmp", parent);
+
+        try
+        {
+            try (OutputStream out = new FileOutputStream(tmp))
+            {
+                header.writeTo(out);
+                index.writeTo(out);
+                data.writeTo(out);
+            }
+
+            // Readers see either the previous file or the new one, never a missing file
+            try
+            {
+                java.nio.file.Files.move(tmp.toPath(), output.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (java.nio.file.AtomicMoveNotSupportedException e)
+            {
+                java.nio.file.Files.move(tmp.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            tmp.delete();
+        }
+    }
+
+    private static byte[][] sortedKeys(final Set<String> keys)
+    {
+        byte[][] sorted = new byte[keys.size()][];
+        int i = 0;
+        for (String key : keys)
+            sorted[i++] = key.getBytes(StandardCharsets.UTF_8);
+
+        Arrays.sort(sorted, BinarySnapshot::compare);
+        return sorted;
+    }
+
+    private static int compare(final byte[] a, final byte[] b)
+    {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++)
+        {
+            int c = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (c != 0)
+                return c;
+        }
+
+        return a.length - b.length;
+    }
+
+    private static void writeValue(final DataOutputStream d, final Properties.Value value)
+            throws IOException
+    {
+        byte type;
+        if (value.isBoolean()) type = BOOLEAN;
+        else if (value.isInteger()) type = INTEGER;
+        else if (value.isLong()) type = LONG;
+        else if (value.isDouble()) type = DOUBLE;
+        else if (value.isFloat()) type = FLOAT;
+        else if (value.isList()) type = LIST;
+        else if (value.isMap()) type = MAP;
+        else type = TEXT;
+
+        int flags = (value.deprecated ? DEPRECATED : 0)
+                    | (null != value.encryptionGroup ? ENCRYPTED : 0)
+                    | (null != value.context ? CONTEXT : 0);
+
+        d.writeByte(type);
+        d.writeByte(flags);
+
+        if (null != value.encryptionGroup)
+            writeString(d, value.encryptionGroup);
+
+        if (null != value.context)
+            writeString(d, value.context);
+
+        switch (type)
+        {
+            case BOOLEAN:
+                d.writeBoolean(value.getBoolean(false));
+                break;
+
+            case INTEGER:
+                d.writeInt(value.getInt(0));
+                break;
+
+            case LONG:
+                d.writeLong(value.getLong(0L));
+                break;
+
+            case DOUBLE:
+                d.writeDouble(value.getDouble(0d));
+                break;
+
+            case FLOAT:
+                d.writeFloat(value.getFloat(0f));
+                break;
+
+            case LIST:
+            {
+                List<String> list = value.getList();
+                d.writeInt(list.size());
+                for (String item : list)
+                    writeString(d, item);
+                break;
+            }
+
+            case MAP:
+            {
+                Map<String, String> map = value.getMap();
+                d.writeInt(map.size());
+                for (Map.Entry<String, String> e : map.entrySet())
+                {
+                    writeString(d, e.getKey());
+                    writeString(d, e.getValue());
+                }
+                break;
+            }
+
+            default:
+                writeString(d, value.get());
+        }
+    }
+
+    private static void writeString(final DataOutputStream d, final String s)
+            throws IOException
+    {
+        if (null == s)
+        {
+            d.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        d.writeInt(bytes.length);
+        d.write(bytes);
+    }
+
+    //------------------------------------------------------------------------------------------------
+    // Read
+    //------------------------------------------------------------------------------------------------
+
+    /*
+     * Map the file, and read only its header.  Properties and files are decoded when looked up.
+     */
+    static Snapshot read(final File input)
+            throws IOException
+    {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(input.toPath(), StandardOpenOption.READ))
+        {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.limit() < 16 || buffer.getInt(0) != MAGIC)
+            throw new ConfigHubException("Not a ConfigHub snapshot file: " + input);
+
+        if (buffer.getShort(4) != VERSION)
+            throw new ConfigHubException("Unsupported ConfigHub snapshot version " + buffer.getShort(4));
+
+        int propertyCount = buffer.getInt(8);
+        int fileCount = buffer.getInt(12);
+
+        int[] position = { 16 };
+        String context = readString(buffer, position);
+        String account = readString(buffer, position);
+        String repositoryName = readString(buffer, position);
+        String eTag = readString(buffer, position);
+        String lastModified = readString(buffer, position);
+
+        int propertyIndex = position[0];
+        int fileIndex = propertyIndex + propertyCount * ENTRY_SIZE;
+
+        return new Snapshot(context,
+                            account,
+                            repositoryName,
+                            new MappedMap<Properties.Value>(buffer, propertyIndex, propertyCount)
+                            {
+                                @Override
+                                Properties.Value decode(final int offset)
+                                {
+                                    return readValue(this.buffer, offset);
+                                }
+                            },
+                            new MappedMap<String>(buffer, fileIndex, fileCount)
+                            {
+                                @Override
+                                String decode(final int offset)
+                                {
+                                    return readString(this.buffer, new int[] { offset });
+                                }
+                            },
+                            eTag,
+                            lastModified);
+    }
+
+    private static Properties.Value readValue(final ByteBuffer buffer, final int offset)
+    {
+        byte type = buffer.get(offset);
+        byte flags = buffer.get(offset + 1);
+        int[] position = { offset + 2 };
+
+        boolean deprecated = (flags & DEPRECATED) != 0;
+        String encryptionGroup = (flags & ENCRYPTED) != 0 ? readString(buffer, position) : null;
+        String context = (flags & CONTEXT) != 0 ? readString(buffer, position) : null;
+        int p = position[0];
+
+        switch (type)
+        {
+            case BOOLEAN:
+                return new Properties.Value.BooleanValue(buffer.get(p) != 0, deprecated, encryptionGroup, context);
+
+            case INTEGER:
+                return new Properties.Value.IntegerValue(buffer.getInt(p), deprecated, encryptionGroup, context);
+
+            case LONG:
+                return new Properties.Value.LongValue(buffer.getLong(p), deprecated, encryptionGroup, context);
+
+            case DOUBLE:
+                return new Properties.Value.DoubleValue(buffer.getDouble(p), deprecated, encryptionGroup, context);
+
+            case FLOAT:
+                return new Properties.Value.FloatValue(buffer.getFloat(p), deprecated, encryptionGroup, context);
+
+            case LIST:
+            {
+                int size = buffer.getInt(p);
+                position[0] = p + 4;
+                List<String> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++)
+                    list.add(readString(buffer, position));
+                return new Properties.Value.ListValue(list, deprecated, encryptionGroup, context);
+            }
+
+            case MAP:
+            {
+                int size = buffer.getInt(p);
+                position[0] = p + 4;
+                Map<String, String> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++)
+                    map.put(readString(buffer, position), readString(buffer, position));
+                return new Properties.Value.MapValue(map, deprecated, encryptionGroup, context);
+            }
+
+            default:
+                return new Properties.Value.TextValue(readString(buffer, position), deprecated, encryptionGroup, context);
+        }
+    }
+
+    /*
+     * Read a string at position[0], and advance the position past it.  Only absolute reads are
+     * used, so the buffer can be shared between threads.
+     */
+    private static String readString(final ByteBuffer buffer, final int[] position)
+    {
+        int p = position[0];
+        int length = buffer.getInt(p);
+        p += 4;
+
+        if (length < 0)
+        {
+            position[0] = p;
+            return null;
+        }
+
+        position[0] = p + length;
+        return new String(bytes(buffer, p, length), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(final ByteBuffer buffer, final int offset, final int length)
+    {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++)
+            bytes[i] = buffer.get(offset + i);
+        return bytes;
+    }
+
+    /*
+     * Immutable map over a sorted index in the mapped buffer.  Lookup is a binary search over the
+     * key bytes; decoded values are cached, so each value is decoded at most once.
+     */
+    abstract static class MappedMap<V>
+            extends AbstractMap<String, V>
+    {
+        final ByteBuffer buffer;
+        private final int index;
+        private final int size;
+        private final Map<String, V> decoded = new ConcurrentHashMap<>();
+
+        MappedMap(final ByteBuffer buffer, final int index, final int size)
+        {
+            this.buffer = buffer;
+            this.index = index;
+            this.size = size;
+        }
+
+        abstract V decode(int offset);
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+
+        @Override
+        public boolean containsKey(final Object key)
+        {
+            return null != get(key);
+        }
+
+        @Override
+        public V get(final Object key)
+        {
+            if (!(key instanceof String))
+                return null;
+
+            V v = decoded.get(key);
+            if (null != v)
+                return v;
+
+            int entry = find(((String)key).getBytes(StandardCharsets.UTF_8));
+            if (entry < 0)
+                return null;
+
+            v = decode(buffer.getInt(entry + 8));
+            V previous = decoded.putIfAbsent((String)key, v);
+            return null == previous ? v : previous;
+        }
+
+        /*
+         * Offset of the index entry of the key, or -1 if key is not in the index.
+         */
+        private int find(final byte[] key)
+        {
+            int low = 0;
+            int high = size - 1;
+
+            while (low <= high)
+            {
+                int mid = (low + high) >>> 1;
+                int entry = index + mid * ENTRY_SIZE;
+                int c = compareKey(entry, key);
+
+                if (c < 0)
+                    low = mid + 1;
+                else if (c > 0)
+                    high = mid - 1;
+                else
+                    return entry;
+            }
+
+            return -1;
+        }
+
+        private int compareKey(final int entry, final byte[] key)
+        {
+            int offset = buffer.getInt(entry);
+            int length = buffer.getInt(entry + 4);
+            int n = Math.min(length, key.length);
+
+            for (int i = 0; i < n; i++)
+            {
+                int c = (buffer.get(offset + i) & 0xFF) - (key[i] & 0xFF);
+                if (c != 0)
+                    return c;
+            }
+
+            return length - key.length;
+        }
+
+        private String key(final int i)
+        {
+            int entry = index + i * ENTRY_SIZE;
+            return new String(bytes(buffer, buffer.getInt(entry), buffer.getInt(entry + 4)), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public Set<String> keySet()
+        {
+            return new AbstractSet<String>()
+            {
+                @Override
+                public Iterator<String> iterator()
+                {
+                    return new Iterator<String>()
+                    {
+                        private int i = 0;
+
+                        @Override
+                        public boolean hasNext()
+                        {
+                            return i < size;
+                        }
+
+                        @Override
+                        public String next()
+                        {
+                            if (i >= size)
+                                throw new NoSuchElementException();
+                            return key(i++);
+                        }
+                    };
+                }
+
+                @Override
+                public boolean contains(final Object o)
+                {
+                    return containsKey(o);
+                }
+
+                @Override
+                public int size()
+                {
+                    return size;
+                }
+            };
+        }
+
+        @Override
+        public Set<Entry<String, V>> entrySet()
+        {
+            return new AbstractSet<Entry<String, V>>()
+            {
+                @Override
+                public Iterator<Entry<String, V>> iterator()
+                {
+                    Iterator<String> keys = keySet().iterator();
+                    return new Iterator<Entry<String, V>>()
+                    {
+                        @Override
+                        public boolean hasNext()
+                        {
+                            return keys.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, V> next()
+                        {
+                            String key = keys.next();
+                            return new SimpleImmutableEntry<>(key, get(key));
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return size;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,507 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2016, ConfigHub, LLC (support@configHub.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+
+package com.confighub.client;
+
+import com.confighub.client.error.ConfigHubException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Binding of properties under a prefix to an interface, record or bean.  Binding resolves keys and
+ * accessors once, when it is created.  For each snapshot, it reads the values once, and creates an
+ * instance holding them, so reading a bound value of a record or bean is a field read.
+ * <br>
+ * Interfaces are implemented with a {@link java.lang.reflect.Proxy}, so each call of a bound method
+ * also looks the method up, and boxes primitive values.  On hot paths, bind a record or bean, and
+ * keep the instance returned by {@link #get()}.
+ * <br>
+ * {@link #get()} returns the instance for the latest snapshot, or the pinned snapshot if binding was
+ * created from pinned properties.  When a new snapshot is published, the next {@link #get()} creates
+ * a new instance, so one instance never mixes values of two snapshots.
+ * <br>
+ * Each member is bound to key <code>prefix.name</code>, where name is the name of the interface
+ * method, record component or bean field, or the value of its {@link ConfigHubKey} annotation.
+ * Members can be String, boolean, int, long, double, float, their boxed types, List or Map.  Keys
+ * which are not present, or cannot be read as the member type, are bound as null, or as zero or false
+ * for primitives; bean fields keep their initial values.
+ * Default methods of an interface are not bound to keys; they run their own body on the proxy.
+ *
+ * <pre>
+ * {@code
+ * Binding<DbConfig> db = configHub.properties.binding(DbConfig.class, "db.primary");
+ *
+ * DbConfig config = db.get();
+ * connect(config.host(), config.port());
+ * }
+ * </pre>
+ *
+ * @param <T> bound type
+ */
+public final class Binding<T>
+{
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final Properties properties;
+    private final Class<T> type;
+    private final String[] keys;
+    private final Class<?>[] types;
+    private final Function<Object[], T> factory;
+
+    // Index of the value of each bound interface method; null if type is not an interface
+    private final Map<Method, Integer> methods;
+
+    // Default methods of the interface, called on the proxy
+    private final Map<Method, MethodHandle> defaults;
+
+    // Values and instance for the latest snapshot read
+    private volatile Bound<T> bound;
+
+    private static final class Bound<T>
+    {
+        final Map<String, Properties.Value> data;
+        final Object[] values;
+        final T instance;
+
+        Bound(final Map<String, Properties.Value> data, final Object[] values, final T instance)
+        {
+            this.data = data;
+            this.values = values;
+            this.instance = instance;
+        }
+    }
+
+    private Binding(final Properties properties,
+                    final Class<T> type,
+                    final String[] keys,
+                    final Class<?>[] types,
+                    final Function<Object[], T> factory,
+                    final Map<Method, Integer> methods,
+                    final Map<Method, MethodHandle> defaults)
+    {
+        this.properties = properties;
+        this.type = type;
+        this.keys = keys;
+        this.types = types;
+        this.factory = factory;
+        this.methods = methods;
+        this.defaults = defaults;
+    }
+
+    /**
+     * @return instance holding values of the latest snapshot
+     */
+    public T get()
+    {
+        return bound(this.properties.snapshot()).instance;
+    }
+
+    /**
+     * @param snapshot pinned snapshot
+     * @return instance holding values of the snapshot
+     */
+    public T get(final Snapshot snapshot)
+    {
+        return bound(snapshot).instance;
+    }
+
+    /**
+     * @return bound type
+     */
+    public Class<T> getType()
+    {
+        return this.type;
+    }
+
+    /*
+     * Instance is created again only when snapshot has different data; snapshots which only add
+     * handle slots share it.  Concurrent callers may each create an instance for the same snapshot,
+     * which hold the same values.
+     */
+    private Bound<T> bound(final Snapshot snapshot)
+    {
+        Bound<T> b = this.bound;
+        if (null != b && b.data == snapshot.data)
+            return b;
+
+        Object[] values = new Object[this.keys.length];
+        for (int i = 0; i < values.length; i++)
+            values[i] = read(snapshot.data.get(this.keys[i]), this.types[i]);
+
+        b = new Bound<>(snapshot.data, values, this.factory.apply(values));
+        this.bound = b;
+        return b;
+    }
+
+    /*
+     * Proxy reading values of the latest snapshot on every call.
+     */
+    T live()
+    {
+        return proxy(this.type, this.keys, this.methods, this.defaults, () -> bound(this.properties.snapshot()).values);
+    }
+
+    static <T> Binding<T> of(final Properties properties, final Class<T> type, final String prefix)
+    {
+        String keyPrefix = null == prefix || prefix.isEmpty() ? "" : prefix.endsWith(".") ? prefix : prefix + ".";
+
+        if (type.isInterface())
+            return ofInterface(properties, type, keyPrefix);
+
+        Object[] components = recordComponents(type);
+        if (null != components)
+            return ofRecord(properties, type, keyPrefix, components);
+
+        return ofBean(properties, type, keyPrefix);
+    }
+
+    private static <T> Binding<T> ofInterface(final Properties properties, final Class<T> type, final String prefix)
+    {
+        List<String> keys = new ArrayList<>();
+        List<Class<?>> types = new ArrayList<>();
+        Map<Method, Integer> methods = new HashMap<>();
+        Map<Method, MethodHandle> defaults = new HashMap<>();
+        for (Method method : type.getMethods())
+        {
+            if (Modifier.isStatic(method.getModifiers()))
+                continue;
+
+            if (method.isDefault())
+            {
+                defaults.put(method, defaultMethod(type, method));
+                continue;
+            }
+
+            if (method.getParameterCount() > 0)
+                throw new ConfigHubException("Cannot bind method with parameters: " + method);
+
+            methods.put(method, keys.size());
+            keys.add(prefix + key(method.getAnnotation(ConfigHubKey.class), method.getName()));
+            types.add(checkType(method.getReturnType(), method.toString()));
+        }
+
+        String[] k = keys.toArray(new String[0]);
+        return new Binding<>(properties, type, k, types.toArray(new Class<?>[0]),
+                             values -> proxy(type, k, methods, defaults, () -> values), methods, defaults);
+    }
+
+    /*
+     * Records exist from Java 16, and this client is built for Java 8, so they are inspected by
+     * reflection.  Returns null if type is not a record.
+     */
+    private static Object[] recordComponents(final Class<?> type)
+    {
+        try
+        {
+            if (!(Boolean)Class.class.getMethod("isRecord").invoke(type))
+                return null;
+
+            return (Object[])Class.class.getMethod("getRecordComponents").invoke(type);
+        }
+        catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new ConfigHubException("Cannot inspect " + type.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private static <T> Binding<T> ofRecord(final Properties properties,
+                                           final Class<T> type,
+                                           final String prefix,
+                                           final Object[] components)
+    {
+        String[] keys = new String[components.length];
+        Class<?>[] types = new Class<?>[components.length];
+        MethodHandle constructor;
+
+        try
+        {
+            for (int i = 0; i < components.length; i++)
+            {
+                Class<?> componentClass = components[i].getClass();
+                String name = (String)componentClass.getMethod("getName").invoke(components[i]);
+                Method accessor = (Method)componentClass.getMethod("getAccessor").invoke(components[i]);
+
+                ConfigHubKey annotation = accessor.getAnnotation(ConfigHubKey.class);
+                if (null == annotation)
+                    annotation = type.getDeclaredField(name).getAnnotation(ConfigHubKey.class);
+
+                keys[i] = prefix + key(annotation, name);
+                types[i] = checkType(accessor.getReturnType(), type.getName() + "." + name);
+            }
+
+            Constructor<T> canonical = type.getDeclaredConstructor(types);
+            canonical.setAccessible(true);
+            constructor = LOOKUP.unreflectConstructor(canonical);
+        }
+        catch (ConfigHubException e)
+        {
+            throw e;
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            throw new ConfigHubException("Cannot bind " + type.getName() + ": " + e.getMessage());
+        }
+
+        return new Binding<>(properties, type, keys, types, values -> {
+            Object[] arguments = new Object[values.length];
+            for (int i = 0; i < values.length; i++)
+                arguments[i] = null == values[i] ? zero(types[i]) : values[i];
+
+            try
+            {
+                return type.cast(constructor.invokeWithArguments(arguments));
+            }
+            catch (Throwable t)
+            {
+                throw new ConfigHubException("Cannot create " + type.getName() + ": " + t.getMessage());
+            }
+        }, null, null);
+    }
+
+    private static <T> Binding<T> ofBean(final Properties properties, final Class<T> type, final String prefix)
+    {
+        List<String> keys = new ArrayList<>();
+        List<Class<?>> types = new ArrayList<>();
+        List<MethodHandle> setters = new ArrayList<>();
+        MethodHandle constructor;
+
+        try
+        {
+            Constructor<T> noArgs = type.getDeclaredConstructor();
+            noArgs.setAccessible(true);
+            constructor = LOOKUP.unreflectConstructor(noArgs);
+
+            for (Class<?> c = type; null != c && Object.class != c; c = c.getSuperclass())
+            {
+                for (Field field : c.getDeclaredFields())
+                {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) ||
+                        Modifier.isTransient(modifiers) || field.isSynthetic())
+                        continue;
+
+                    keys.add(prefix + key(field.getAnnotation(ConfigHubKey.class), field.getName()));
+                    types.add(checkType(field.getType(), c.getName() + "." + field.getName()));
+
+                    field.setAccessible(true);
+                    setters.add(LOOKUP.unreflectSetter(field));
+                }
+            }
+        }
+        catch (ConfigHubException e)
+        {
+            throw e;
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            throw new ConfigHubException("Cannot bind " + type.getName() + ": " + e.getMessage());
+        }
+
+        MethodHandle[] s = setters.toArray(new MethodHandle[0]);
+        return new Binding<>(properties, type, keys.toArray(new String[0]), types.toArray(new Class<?>[0]), values -> {
+            try
+            {
+                Object bean = constructor.invoke();
+                for (int i = 0; i < values.length; i++)
+                {
+                    if (null != values[i])
+                        s[i].invoke(bean, values[i]);
+                }
+                return type.cast(bean);
+            }
+            catch (Throwable t)
+            {
+                throw new ConfigHubException("Cannot create " + type.getName() + ": " + t.getMessage());
+            }
+        }, null, null);
+    }
+
+    /*
+     * Handle calling the body of a default method, given the proxy as receiver.  Java 9 and later
+     * have MethodHandles.privateLookupIn; on Java 8, a lookup with private access to the interface is
+     * created through the Lookup constructor.
+     */
+    private static MethodHandle defaultMethod(final Class<?> type, final Method method)
+    {
+        try
+        {
+            MethodHandles.Lookup lookup;
+            try
+            {
+                Method privateLookupIn = MethodHandles.class.getMethod("privateLookupIn", Class.class,
+                                                                       MethodHandles.Lookup.class);
+                lookup = (MethodHandles.Lookup)privateLookupIn.invoke(null, type, LOOKUP);
+            }
+            catch (NoSuchMethodException e)
+            {
+                Constructor<MethodHandles.Lookup> constructor =
+                        MethodHandles.Lookup.class.getDeclaredConstructor(Class.class, int.class);
+                constructor.setAccessible(true);
+                lookup = constructor.newInstance(type, MethodHandles.Lookup.PRIVATE);
+            }
+
+            return lookup.unreflectSpecial(method, type);
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            throw new ConfigHubException("Cannot bind default method " + method + ": " + e.getMessage());
+        }
+    }
+
+    private static String key(final ConfigHubKey annotation, final String name)
+    {
+        return null == annotation ? name : annotation.value();
+    }
+
+    private static Class<?> checkType(final Class<?> type, final String member)
+    {
+        if (String.class == type || List.class == type || Map.class == type ||
+            boolean.class == type || Boolean.class == type ||
+            int.class == type || Integer.class == type ||
+            long.class == type || Long.class == type ||
+            double.class == type || Double.class == type ||
+            float.class == type || Float.class == type)
+            return type;
+
+        throw new ConfigHubException("Cannot bind " + member + " of type " + type.getName());
+    }
+
+    /*
+     * Value read as the member type, or null if it is not present, or cannot be read as the type.
+     */
+    private static Object read(final Properties.Value v, final Class<?> type)
+    {
+        if (null == v)
+            return null;
+
+        if (String.class == type)
+            return v.get();
+
+        if (int.class == type || Integer.class == type)
+            return v.hasInt() ? v.getInt(0) : null;
+
+        if (long.class == type || Long.class == type)
+            return v.hasLong() ? v.getLong(0L) : null;
+
+        if (boolean.class == type || Boolean.class == type)
+            return v.hasBoolean() ? v.getBoolean(false) : null;
+
+        if (double.class == type || Double.class == type)
+            return v.hasDouble() ? v.getDouble(0d) : null;
+
+        if (float.class == type || Float.class == type)
+            return v.hasFloat() ? v.getFloat(0f) : null;
+
+        if (List.class == type)
+            return v.isList() ? v.getList() : null;
+
+        return v.isMap() ? v.getMap() : null;
+    }
+
+    private static Object zero(final Class<?> type)
+    {
+        if (int.class == type)
+            return 0;
+        if (long.class == type)
+            return 0L;
+        if (boolean.class == type)
+            return false;
+        if (double.class == type)
+            return 0d;
+        if (float.class == type)
+            return 0f;
+        return null;
+    }
+
+    /*
+     * Proxy of the interface answering each method from an array of values, in the order of
+     * interface methods bound to keys.
+     */
+    private static <T> T proxy(final Class<T> type,
+                               final String[] keys,
+                               final Map<Method, Integer> methods,
+                               final Map<Method, MethodHandle> defaults,
+                               final Supplier<Object[]> values)
+    {
+        InvocationHandler handler = (proxy, method, args) -> {
+            Integer index = methods.get(method);
+            if (null != index)
+            {
+                Object value = values.get()[index];
+                return null == value ? zero(method.getReturnType()) : value;
+            }
+
+            MethodHandle body = defaults.get(method);
+            if (null != body)
+            {
+                Object[] arguments = new Object[null == args ? 1 : args.length + 1];
+                arguments[0] = proxy;
+                if (null != args)
+                    System.arraycopy(args, 0, arguments, 1, args.length);
+                return body.invokeWithArguments(arguments);
+            }
+
+            switch (method.getName())
+            {
+                case "equals":
+                    return proxy == args[0];
+
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+
+                case "toString":
+                {
+                    Object[] v = values.get();
+                    StringBuilder s = new StringBuilder(type.getSimpleName()).append('{');
+                    for (int k = 0; k < keys.length; k++)
+                        s.append(0 == k ? "" : ", ").append(keys[k]).append('=').append(v[k]);
+                    return s.append('}').toString();
+                }
+
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        };
+
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2016, ConfigHub, LLC (support@configHub.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+
+package com.confighub.client;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+
+/*
+ * Dispatches configuration changes to registered listeners.
+ *
+ * Each listener remembers the last snapshot it was called with.  A published snapshot schedules a
+ * listener unless it is already scheduled, and the scheduled call diffs the latest snapshot against
+ * the remembered one, so publishes made before the call are coalesced into one.  Listeners with the
+ * same remembered snapshot share the diff.
+ */
+final class ChangeDispatcher
+{
+    private final ConfigHub configHub;
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+    // Last computed diff, shared by listeners called for the same pair of snapshots
+    private volatile Changes lastChanges;
+
+    ChangeDispatcher(final ConfigHub configHub)
+    {
+        this.configHub = configHub;
+    }
+
+    private final class Registration
+    {
+        final ChangeListener listener;
+        final Predicate<String> keys;
+        final Predicate<String> files;
+        final AtomicBoolean scheduled = new AtomicBoolean();
+
+        // Guarded by this
+        Snapshot delivered;
+
+        Registration(final ChangeListener listener,
+                     final Predicate<String> keys,
+                     final Predicate<String> files)
+        {
+            this.listener = listener;
+            this.keys = keys;
+            this.files = files;
+            this.delivered = configHub.getSnapshot();
+        }
+
+        void schedule()
+        {
+            if (!this.scheduled.compareAndSet(false, true))
+                return;
+
+            try
+            {
+                configHub.listenerExecutor().execute(this::deliver);
+            }
+            catch (RuntimeException e)
+            {
+                this.scheduled.set(false);
+                ConfigHub.log.log(Level.WARNING, "Cannot schedule configuration change listener", e);
+            }
+        }
+
+        /*
+         * Serialized, so a listener is never called concurrently with itself, and snapshots are
+         * delivered in order.
+         */
+        synchronized void deliver()
+        {
+            this.scheduled.set(false);
+
+            Snapshot current = configHub.getSnapshot();
+            Changes changes = changes(this.delivered, current).filter(this.keys, this.files);
+            this.delivered = current;
+
+            if (changes.isEmpty())
+                return;
+
+            try
+            {
+                this.listener.changed(changes);
+            }
+            catch (RuntimeException e)
+            {
+                ConfigHub.log.log(Level.WARNING, "Configuration change listener failed", e);
+            }
+        }
+    }
+
+    private Changes changes(final Snapshot previous, final Snapshot current)
+    {
+        Changes changes = this.lastChanges;
+        if (null != changes && changes.getPrevious() == previous && changes.getCurrent() == current)
+            return changes;
+
+        changes = Changes.between(previous, current);
+        this.lastChanges = changes;
+        return changes;
+    }
+
+    void add(final ChangeListener listener,
+             final Predicate<String> keys,
+             final Predicate<String> files)
+    {
+        this.registrations.add(new Registration(listener, keys, files));
+    }
+
+    void remove(final ChangeListener listener)
+    {
+        this.registrations.removeIf(registration -> registration.listener == listener);
+    }
+
+    /*
+     * Called after a new snapshot is published.
+     */
+    void published()
+    {
+        for (Registration registration : this.registrations)
+            registration.schedule();
+    }
+}
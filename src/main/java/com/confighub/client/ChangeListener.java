@@ -0,0 +1,44 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2016, ConfigHub, LLC (support@configHub.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+
+package com.confighub.client;
+
+/**
+ * Listener of configuration changes, registered with
+ * {@link ConfigHub#addKeyListener(String, ChangeListener)},
+ * {@link ConfigHub#addPrefixListener(String, ChangeListener)} or
+ * {@link ConfigHub#addFileListener(String, ChangeListener)}.
+ */
+@FunctionalInterface
+public interface ChangeListener
+{
+    /**
+     * Called when keys or files the listener is registered for have changed.  Changes of successive
+     * pulls which happen before the listener is called are delivered together.
+     *
+     * @param changes to keys and files the listener is registered for
+     */
+    void changed(Changes changes);
+}
@@ -0,0 +1,202 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2016, ConfigHub, LLC (support@configHub.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+
+package com.confighub.client;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Changes between two snapshots of the configuration: keys added, removed, or with a changed typed
+ * value, and files added, removed or changed.
+ */
+public final class Changes
+{
+    private final Snapshot previous;
+    private final Snapshot current;
+    private final Set<String> added;
+    private final Set<String> removed;
+    private final Set<String> changed;
+    private final Set<String> changedFiles;
+
+    private Changes(final Snapshot previous,
+                    final Snapshot current,
+                    final Set<String> added,
+                    final Set<String> removed,
+                    final Set<String> changed,
+                    final Set<String> changedFiles)
+    {
+        this.previous = previous;
+        this.current = current;
+        this.added = Collections.unmodifiableSet(added);
+        this.removed = Collections.unmodifiableSet(removed);
+        this.changed = Collections.unmodifiableSet(changed);
+        this.changedFiles = Collections.unmodifiableSet(changedFiles);
+    }
+
+    /*
+     * Snapshots from the same document, or sharing their maps, have no changes.  Otherwise, values
+     * of each key are compared, unless both snapshots hold the same value object.
+     */
+    static Changes between(final Snapshot previous, final Snapshot current)
+    {
+        Set<String> added = new HashSet<>();
+        Set<String> removed = new HashSet<>();
+        Set<String> changed = new HashSet<>();
+        Set<String> changedFiles = new HashSet<>();
+
+        boolean sameDocument = null != previous.digest && Arrays.equals(previous.digest, current.digest);
+        if (!sameDocument)
+        {
+            if (previous.data != current.data)
+            {
+                for (Map.Entry<String, Properties.Value> e : current.data.entrySet())
+                {
+                    Properties.Value value = previous.data.get(e.getKey());
+                    if (null == value)
+                        added.add(e.getKey());
+                    else if (!value.sameValue(e.getValue()))
+                        changed.add(e.getKey());
+                }
+
+                for (String key : previous.data.keySet())
+                {
+                    if (!current.data.containsKey(key))
+                        removed.add(key);
+                }
+            }
+
+            if (previous.fileContents != current.fileContents)
+            {
+                for (Map.Entry<String, String> e : current.fileContents.entrySet())
+                {
+                    String content = previous.fileContents.get(e.getKey());
+                    if (content != e.getValue() && !e.getValue().equals(content))
+                        changedFiles.add(e.getKey());
+                }
+
+                for (String name : previous.fileContents.keySet())
+                {
+                    if (!current.fileContents.containsKey(name))
+                        changedFiles.add(name);
+                }
+            }
+        }
+
+        return new Changes(previous, current, added, removed, changed, changedFiles);
+    }
+
+    /*
+     * Changes to keys and files matching the predicates.
+     */
+    Changes filter(final Predicate<String> keys, final Predicate<String> files)
+    {
+        return new Changes(this.previous, this.current,
+                           filter(this.added, keys),
+                           filter(this.removed, keys),
+                           filter(this.changed, keys),
+                           filter(this.changedFiles, files));
+    }
+
+    private static Set<String> filter(final Set<String> names, final Predicate<String> predicate)
+    {
+        Set<String> filtered = new HashSet<>();
+        for (String name : names)
+        {
+            if (predicate.test(name))
+                filtered.add(name);
+        }
+        return filtered;
+    }
+
+    /**
+     * @return true if nothing changed
+     */
+    public boolean isEmpty()
+    {
+        return this.added.isEmpty() && this.removed.isEmpty() && this.changed.isEmpty() && this.changedFiles.isEmpty();
+    }
+
+    /**
+     * @return snapshot before the changes
+     */
+    public Snapshot getPrevious()
+    {
+        return this.previous;
+    }
+
+    /**
+     * @return snapshot after the changes
+     */
+    public Snapshot getCurrent()
+    {
+        return this.current;
+    }
+
+    /**
+     * @return keys which were not in the previous snapshot
+     */
+    public Set<String> getAdded()
+    {
+        return this.added;
+    }
+
+    /**
+     * @return keys which are not in the current snapshot
+     */
+    public Set<String> getRemoved()
+    {
+        return this.removed;
+    }
+
+    /**
+     * @return keys with a different type or value in the current snapshot
+     */
+    public Set<String> getChanged()
+    {
+        return this.changed;
+    }
+
+    /**
+     * @return names of files added, removed or changed
+     */
+    public Set<String> getChangedFiles()
+    {
+        return this.changedFiles;
+    }
+
+    /**
+     * @param key property key
+     * @return true if the key was added, removed or changed
+     */
+    public boolean contains(final String key)
+    {
+        return this.added.contains(key) || this.removed.contains(key) || this.changed.contains(key);
+    }
+}
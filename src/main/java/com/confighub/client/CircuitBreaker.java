@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2016, ConfigHub, LLC (support@configHub.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+
+package com.confighub.client;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker around a ConfigHub endpoint.  After a number of consecutive failures, breaker opens,
+ * and requests fail fast without contacting the server.  Once the open period elapses, a single probe
+ * request is let through; if it succeeds breaker closes, otherwise it opens again.
+ * <br>
+ * A failure is an I/O error, or a response with status 429 or 5xx.
+ */
+public final class CircuitBreaker
+{
+    public enum State
+    {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Thrown instead of sending a request while the breaker is open.
+     */
+    static final class OpenException
+            extends IOException
+    {
+        private static final long serialVersionUID = 1L;
+
+        OpenException()
+        {
+            super("Circuit breaker open");
+        }
+    }
+
+    private final int failureThreshold;
+    private final long openDuration;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+
+    /**
+     * @param failureThreshold consecutive failures after which breaker opens.  Zero disables the breaker.
+     * @param openDuration for which requests fail fast
+     * @param unit of the open duration
+     */
+    CircuitBreaker(final int failureThreshold, final long openDuration, final TimeUnit unit)
+    {
+        this.failureThreshold = Math.max(0, failureThreshold);
+        this.openDuration = unit.toNanos(Math.max(0, openDuration));
+    }
+
+    public synchronized State getState()
+    {
+        return state;
+    }
+
+    static boolean isFailure(final int statusCode)
+    {
+        return 429 == statusCode || statusCode >= 500;
+    }
+
+    /*
+     * True if a request may be sent.  In half-open state, only one probe is allowed until its outcome
+     * is reported.
+     */
+    synchronized boolean allowRequest()
+    {
+        switch (state)
+        {
+            case CLOSED:
+                return true;
+
+            case OPEN:
+                if (System.nanoTime() - openedAt < openDuration)
+                    return false;
+
+                state = State.HALF_OPEN;
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    synchronized void onSuccess()
+    {
+        if (State.CLOSED != state)
+            ConfigHub.log.info("Circuit breaker closed");
+
+        state = State.CLOSED;
+        failures = 0;
+    }
+
+    synchronized void onFailure()
+    {
+        if (0 == failureThreshold)
+            return;
+
+        failures++;
+        if (State.HALF_OPEN == state || (State.CLOSED == state && failures >= failureThreshold))
+        {
+            if (State.CLOSED == state)
+                ConfigHub.log.warning("Circuit breaker opened after " + failures + " consecutive failures");
+
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+}
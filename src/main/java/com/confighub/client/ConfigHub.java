@@ -26,16 +26,26 @@ package com.confighub.client;
 
 import com.confighub.client.error.ConfigHubException;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonObject;
 
-import javax.net.ssl.HttpsURLConnection;
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 /**
  * The ConfigHub Object is an interface for either pulling configuration from ConfigHub API servers,
@@ -76,6 +86,7 @@ public final class ConfigHub
 {
     static final Logger log = Logger.getLogger("ConfigHub");
     static final String clientApiVersion = "v1.3.0";
+    private static final Transport DEFAULT_TRANSPORT = new UrlConnectionTransport();
 
     private final String token;
     String context;
@@ -89,10 +100,40 @@ public final class ConfigHub
     String applicationName;
     private String confighubServerAddress;
     private boolean secureConnection = true;
+    private boolean compression = true;
+    private int connectTimeout = 10000;
+    private int readTimeout = 30000;
+    private File cacheFile;
+    private Executor executor;
+    private Executor listenerExecutor;
+    private Transport transport = DEFAULT_TRANSPORT;
+    private RetryPolicy retryPolicy = RetryPolicy.none();
+    private CircuitBreaker pullBreaker = new CircuitBreaker(0, 0, TimeUnit.SECONDS);
+    private CircuitBreaker pushBreaker = new CircuitBreaker(0, 0, TimeUnit.SECONDS);
+    private final CountDownLatch firstLoad = new CountDownLatch(1);
+
+    // Single-flight pull state
+    private final AtomicReference<CompletableFuture<Void>> inFlightPull = new AtomicReference<>();
+    private volatile long lastPullCompleted;
+    private volatile long pullFreshness;
+    boolean pushCompression = false;
+    final TransferStats transferStats = new TransferStats();
     String account = null;
     String repositoryName = null;
-    JsonObject configJson;
-    JsonObject filesJson;
+
+    // Latest configuration.  Replaced as a whole, so readers never see a partially applied pull.
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    // Keys bound to property handles, and their slot indexes.  Slots are never reassigned.
+    private final Object publishLock = new Object();
+    private final Map<String, Integer> slots = new HashMap<>();
+    private String[] slotKeys = new String[0];
+
+    private final ChangeDispatcher changeDispatcher = new ChangeDispatcher(this);
+
+    private final Object refreshLock = new Object();
+    private ScheduledExecutorService refreshScheduler;
+    private ScheduledFuture<?> refreshTask;
 
     public final Properties properties;
     public final Files files;
@@ -178,6 +219,219 @@ public final class ConfigHub
         return this;
     }
 
+    /**
+     * Ask the server to compress pulled configuration with gzip or deflate.  Response is decompressed
+     * while it is being read.
+     *
+     * @param compression true if pull responses may be compressed.  Default: true.
+     * @return ConfigHub object
+     */
+    public ConfigHub setCompression(boolean compression)
+    {
+        this.compression = compression;
+        return this;
+    }
+
+    /**
+     * Compress pushed data with gzip.  ConfigHub server has to accept gzip encoded requests.
+     *
+     * @param pushCompression true if push requests should be compressed.  Default: false.
+     * @return ConfigHub object
+     */
+    public ConfigHub setPushCompression(boolean pushCompression)
+    {
+        this.pushCompression = pushCompression;
+        return this;
+    }
+
+    /**
+     * Timeouts of connections to the ConfigHub server.
+     *
+     * @param connectTimeout in milliseconds, to establish a connection.  Default: 10000.  Zero is infinite.
+     * @param readTimeout in milliseconds, to wait for the response data.  Default: 30000.  Zero is infinite.
+     * @return ConfigHub object
+     */
+    public ConfigHub setTimeouts(int connectTimeout, int readTimeout)
+    {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        return this;
+    }
+
+    /**
+     * Set a local last-known-good configuration file.  After each successful pull, configuration is
+     * written to this file in the binary snapshot format, and {@link #startFromCache()} reads it to
+     * serve configuration without waiting for the ConfigHub server.
+     *
+     * @param cacheFile path and name of the cache file
+     * @return ConfigHub object
+     */
+    public ConfigHub setCacheFile(String cacheFile)
+    {
+        this.cacheFile = null == cacheFile ? null : new File(cacheFile);
+        return this;
+    }
+
+    /**
+     * Executor on which {@link #pullAsync()} and {@link PushQueue#flushAsync()} run.  If not set,
+     * virtual threads are used on JDKs that have them, or a small pool of daemon threads otherwise.
+     *
+     * @param executor for asynchronous pulls and pushes
+     * @return ConfigHub object
+     */
+    public ConfigHub setExecutor(Executor executor)
+    {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Executor on which change listeners are called.  If not set, listeners are called on the
+     * executor of asynchronous pulls and pushes.
+     *
+     * @param listenerExecutor for change listeners
+     * @return ConfigHub object
+     */
+    public ConfigHub setListenerExecutor(Executor listenerExecutor)
+    {
+        this.listenerExecutor = listenerExecutor;
+        return this;
+    }
+
+    /**
+     * Call the listener when the value of a key is added, removed, or changes type or value.
+     *
+     * @param key property key
+     * @param listener of changes
+     * @return ConfigHub object
+     */
+    public ConfigHub addKeyListener(final String key, final ChangeListener listener)
+    {
+        this.changeDispatcher.add(listener, key::equals, name -> false);
+        return this;
+    }
+
+    /**
+     * Call the listener when values of keys starting with the prefix are added, removed, or change.
+     *
+     * @param prefix of property keys
+     * @param listener of changes
+     * @return ConfigHub object
+     */
+    public ConfigHub addPrefixListener(final String prefix, final ChangeListener listener)
+    {
+        this.changeDispatcher.add(listener, key -> key.startsWith(prefix), name -> false);
+        return this;
+    }
+
+    /**
+     * Call the listener when the file is added, removed, or its content changes.
+     *
+     * @param fileName name of the file in your repository
+     * @param listener of changes
+     * @return ConfigHub object
+     */
+    public ConfigHub addFileListener(final String fileName, final ChangeListener listener)
+    {
+        String name = fileName.trim();
+        this.changeDispatcher.add(listener, key -> false, name::equals);
+        return this;
+    }
+
+    /**
+     * Remove all registrations of the listener.
+     *
+     * @param listener of changes
+     * @return ConfigHub object
+     */
+    public ConfigHub removeListener(final ChangeListener listener)
+    {
+        this.changeDispatcher.remove(listener);
+        return this;
+    }
+
+    /**
+     * Transport used to pull and push.  By default, all ConfigHub objects share one
+     * {@link UrlConnectionTransport}, so they also share its connections.
+     *
+     * @param transport for requests to the ConfigHub server
+     * @return ConfigHub object
+     */
+    public ConfigHub setTransport(Transport transport)
+    {
+        if (null == transport)
+            throw new ConfigHubException("Transport cannot be null.");
+
+        this.transport = transport;
+        return this;
+    }
+
+    /**
+     * Retry policy for pull and push requests.  Default: {@link RetryPolicy#none()}.
+     *
+     * @param retryPolicy for requests to the ConfigHub server
+     * @return ConfigHub object
+     */
+    public ConfigHub setRetryPolicy(RetryPolicy retryPolicy)
+    {
+        this.retryPolicy = null == retryPolicy ? RetryPolicy.none() : retryPolicy;
+        return this;
+    }
+
+    /**
+     * Set circuit breakers around pull and push endpoints; each endpoint has its own breaker.
+     * While the pull breaker is open, {@link #pull()} keeps serving current configuration, or fails
+     * fast if none is loaded.  While the push breaker is open, {@link PushQueue#flush()} fails fast
+     * with response code 0, and keeps the queued changes.
+     *
+     * @param failureThreshold consecutive failures after which breaker opens.  Zero disables breakers.
+     * @param openDuration for which requests fail fast before a probe request is let through
+     * @param unit of the open duration
+     * @return ConfigHub object
+     */
+    public ConfigHub setCircuitBreaker(int failureThreshold, long openDuration, TimeUnit unit)
+    {
+        this.pullBreaker = new CircuitBreaker(failureThreshold, openDuration, unit);
+        this.pushBreaker = new CircuitBreaker(failureThreshold, openDuration, unit);
+        return this;
+    }
+
+    /**
+     * @return circuit breaker around the pull endpoint
+     */
+    public CircuitBreaker getPullCircuitBreaker()
+    {
+        return this.pullBreaker;
+    }
+
+    /**
+     * @return circuit breaker around the push endpoint
+     */
+    public CircuitBreaker getPushCircuitBreaker()
+    {
+        return this.pushBreaker;
+    }
+
+    Executor executor()
+    {
+        Executor executor = this.executor;
+        return null == executor ? DefaultExecutor.get() : executor;
+    }
+
+    Executor listenerExecutor()
+    {
+        Executor listenerExecutor = this.listenerExecutor;
+        return null == listenerExecutor ? executor() : listenerExecutor;
+    }
+
+    /**
+     * @return counts of bytes transferred by pulls and pushes of this ConfigHub object
+     */
+    public TransferStats getTransferStats()
+    {
+        return this.transferStats;
+    }
+
     /**
      * Set the name of client application
      *
@@ -261,6 +515,131 @@ public final class ConfigHub
         return this;
     }
 
+    /**
+     * Periodically pull configuration in the background.  Each refresh is a conditional request, so
+     * if the configuration has not changed since the last pull, server answers with 304 (Not Modified)
+     * and nothing is downloaded or parsed.
+     * <p>
+     * Refresh runs on a daemon thread, and errors are logged without cancelling subsequent refreshes.
+     * </p>
+     *
+     * @param interval between pulls.  Zero or negative value stops background refresh.
+     * @param unit of the interval
+     * @return ConfigHub object
+     */
+    public ConfigHub setRefreshInterval(long interval, TimeUnit unit)
+    {
+        synchronized (this.refreshLock)
+        {
+            if (null != this.refreshTask)
+            {
+                this.refreshTask.cancel(false);
+                this.refreshTask = null;
+            }
+
+            if (interval <= 0)
+                return this;
+
+            this.refreshTask = refreshScheduler().scheduleWithFixedDelay(() -> {
+                try
+                {
+                    pull();
+                }
+                catch (Exception e)
+                {
+                    log.log(Level.WARNING, "Background configuration refresh failed", e);
+                }
+            }, interval, interval, unit);
+        }
+
+        return this;
+    }
+
+    /*
+     * Daemon thread on which background pulls run.  Must be called with refreshLock held.
+     */
+    private ScheduledExecutorService refreshScheduler()
+    {
+        if (null == this.refreshScheduler)
+        {
+            this.refreshScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ConfigHub-refresh");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        return this.refreshScheduler;
+    }
+
+    /**
+     * Stop background configuration refresh, if it was started with
+     * {@link #setRefreshInterval(long, TimeUnit)}.
+     */
+    public void stopRefresh()
+    {
+        synchronized (this.refreshLock)
+        {
+            setRefreshInterval(0, TimeUnit.MILLISECONDS);
+
+            if (null != this.refreshScheduler)
+            {
+                this.refreshScheduler.shutdown();
+                this.refreshScheduler = null;
+            }
+        }
+    }
+
+    /**
+     * Start serving configuration from the last-known-good cache file set by {@link #setCacheFile(String)},
+     * and revalidate it against the ConfigHub server in the background.  When the server responds with
+     * a newer configuration, it replaces the cached one.  If the server cannot be reached, cached
+     * configuration keeps being served.
+     * <p>
+     * If the cache file does not exist, or cannot be read, configuration is pulled before this method
+     * returns.
+     * </p>
+     *
+     * @return ConfigHub object
+     * @throws ConfigHubException if cache is not available, and configuration cannot be pulled
+     */
+    public ConfigHub startFromCache()
+            throws ConfigHubException
+    {
+        if (null == this.cacheFile || !this.cacheFile.isFile())
+        {
+            pull();
+            return this;
+        }
+
+        try
+        {
+            load(BinarySnapshot.read(this.cacheFile));
+        }
+        catch (Exception e)
+        {
+            log.log(Level.WARNING, "Cannot read configuration cache " + this.cacheFile, e);
+            pull();
+            return this;
+        }
+
+        synchronized (this.refreshLock)
+        {
+            refreshScheduler().execute(() -> {
+                try
+                {
+                    pull();
+                }
+                catch (Exception e)
+                {
+                    log.log(Level.WARNING, "Revalidation of cached configuration failed", e);
+                }
+            });
+        }
+
+        return this;
+    }
+
     /**
      * Rather than pulling from ConfigHub servers, read properties from a saved ConfigHub
      * properties file.
@@ -272,20 +651,19 @@ public final class ConfigHub
     public Properties fromFile(String file)
             throws IOException
     {
-        BufferedReader br = new BufferedReader(new FileReader(file));
-
-        String line;
-        StringBuilder sb = new StringBuilder();
-        while ((line = br.readLine()) != null)
-            sb.append(line);
-        br.close();
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))
+        {
+            read(reader, null, null);
+        }
 
-        readJson(sb.toString());
         return this.properties;
     }
 
     /**
-     * Path and name of file where configuration will be saved.
+     * Path and name of file where configuration will be saved.  File holds what the client reads from
+     * the pulled document: context, type, value, deprecation and encryption group of each property,
+     * and file contents.  Other fields, such as comments pulled with {@link #includeComments(boolean)},
+     * are not saved.
      *
      * @param out path and name
      * @throws IOException is thrown if file cannot be written
@@ -293,28 +671,165 @@ public final class ConfigHub
     public void toFile(String out)
             throws IOException
     {
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        JsonObject json = new JsonObject();
-        json.addProperty("context", this.context);
-        json.addProperty("account", this.account);
-        json.addProperty("repo", this.repositoryName);
-        json.add("properties", this.configJson);
-        json.add("files", this.filesJson);
-
-        String js = gson.toJson(json);
-
         File output = new File(out);
         output.getParentFile().mkdirs();
 
-        FileWriter fw = new FileWriter(output);
-        fw.write(js);
-        fw.close();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output),
+                                                                       StandardCharsets.UTF_8)))
+        {
+            JsonSnapshot.write(this.snapshot, writer);
+        }
 
         ConfigHub.log.info("Wrote configuration to file: " + output.getCanonicalPath());
     }
 
-    HttpURLConnection getHttpsConnection(String rest)
-        throws IOException
+    /**
+     * Read configuration from a binary snapshot file, written by {@link #toBinaryFile(String)}.
+     * File is memory mapped, and property values are decoded only when they are first read, so
+     * configuration is available right after the file header is read, regardless of its size.
+     *
+     * @param file binary configuration file
+     * @return Properties Object
+     * @throws IOException is thrown if file cannot be read
+     */
+    public Properties fromBinaryFile(String file)
+            throws IOException
+    {
+        load(BinarySnapshot.read(new File(file)));
+        return this.properties;
+    }
+
+    /**
+     * Path and name of file where configuration will be saved in a compact binary format.
+     *
+     * @param out path and name
+     * @throws IOException is thrown if file cannot be written
+     */
+    public void toBinaryFile(String out)
+            throws IOException
+    {
+        File output = new File(out);
+        BinarySnapshot.write(this.snapshot, output);
+
+        ConfigHub.log.info("Wrote binary configuration to file: " + output.getCanonicalPath());
+    }
+
+    /**
+     * Convert a configuration file saved with {@link #toFile(String)} to the binary format.
+     *
+     * @param jsonFile configuration JSON file
+     * @param binaryFile path and name of the binary file
+     * @throws IOException is thrown if a file cannot be read or written
+     */
+    public static void convertToBinary(String jsonFile, String binaryFile)
+            throws IOException
+    {
+        JsonSnapshot data;
+        try (Reader reader = new InputStreamReader(new FileInputStream(jsonFile), StandardCharsets.UTF_8))
+        {
+            data = JsonSnapshot.read(reader);
+        }
+
+        BinarySnapshot.write(new Snapshot(data.context,
+                                          data.account,
+                                          data.repositoryName,
+                                          data.data,
+                                          data.files,
+                                          null,
+                                          null),
+                             new File(binaryFile));
+    }
+
+    /**
+     * Convert a binary configuration file saved with {@link #toBinaryFile(String)} to JSON.
+     *
+     * @param binaryFile binary configuration file
+     * @param jsonFile path and name of the JSON file
+     * @throws IOException is thrown if a file cannot be read or written
+     */
+    public static void convertToJson(String binaryFile, String jsonFile)
+            throws IOException
+    {
+        Snapshot snapshot = BinarySnapshot.read(new File(binaryFile));
+
+        File output = new File(jsonFile);
+        output.getAbsoluteFile().getParentFile().mkdirs();
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output),
+                                                                       StandardCharsets.UTF_8)))
+        {
+            JsonSnapshot.write(snapshot, writer);
+        }
+    }
+
+    /**
+     * Latest configuration snapshot.  Pin the returned snapshot to read several properties or files
+     * from the same version, regardless of pulls that happen in the meantime.
+     *
+     * @return Snapshot of the latest pulled or read configuration
+     */
+    public Snapshot getSnapshot()
+    {
+        return this.snapshot;
+    }
+
+    /*
+     * Make the snapshot the latest configuration.
+     */
+    void publish(final Snapshot snapshot)
+    {
+        synchronized (this.publishLock)
+        {
+            this.snapshot = snapshot.withSlots(this.slotKeys);
+        }
+
+        this.changeDispatcher.published();
+    }
+
+    /*
+     * Publish current configuration with values replaced or added, atomically with respect to
+     * pulls and other patches.
+     */
+    void patch(final Map<String, Properties.Value> values)
+    {
+        synchronized (this.publishLock)
+        {
+            // Nothing to patch until configuration is loaded
+            if (0 != this.firstLoad.getCount())
+                return;
+
+            this.snapshot = this.snapshot.withValues(values).withSlots(this.slotKeys);
+        }
+
+        this.changeDispatcher.published();
+    }
+
+    /*
+     * Slot index of a property handle key.  Newly assigned slot is resolved in the latest snapshot
+     * right away, so handles do not fall back to a key lookup until the next pull.
+     */
+    int slot(final String key)
+    {
+        synchronized (this.publishLock)
+        {
+            Integer slot = this.slots.get(key);
+            if (null != slot)
+                return slot;
+
+            slot = this.slotKeys.length;
+            this.slots.put(key, slot);
+            this.slotKeys = Arrays.copyOf(this.slotKeys, slot + 1);
+            this.slotKeys[slot] = key;
+
+            this.snapshot = this.snapshot.withSlots(this.slotKeys);
+            return slot;
+        }
+    }
+
+    /*
+     * Request to a ConfigHub REST endpoint, with timeouts and authentication set.
+     */
+    Transport.Request request(final String method, final String rest)
     {
         StringBuilder url = new StringBuilder();
         url.append(this.secureConnection ? "https" : "http")
@@ -333,76 +848,240 @@ public final class ConfigHub
                .append(this.repositoryName);
         }
 
-        URL chUrl = new URL(url.toString());
         log.info("Connecting to ConfigHub via url: " + url.toString());
 
-        HttpURLConnection connection;
+        return new Transport.Request(method, url.toString())
+                .timeouts(this.connectTimeout, this.readTimeout)
+                .header("Client-Token", this.token);
+    }
+
+    Transport.Response send(final Transport.Request request, final boolean push)
+            throws IOException
+    {
+        return send(request, push, null);
+    }
+
+    /*
+     * Send a request through the transport, retrying according to the retry policy, and reporting
+     * outcomes to the circuit breaker.  Request body must be repeatable.  If there is a rate
+     * limiter, every attempt, retries included, waits for a token from it.
+     *
+     * Throws CircuitBreaker.OpenException if the breaker does not allow an attempt.
+     */
+    Transport.Response send(final Transport.Request request, final boolean push, final RateLimiter rateLimiter)
+            throws IOException
+    {
+        RetryPolicy policy = this.retryPolicy;
+        CircuitBreaker breaker = push ? this.pushBreaker : this.pullBreaker;
+
+        for (int attempt = 1; ; attempt++)
+        {
+            if (null != rateLimiter)
+                rateLimiter.acquire();
 
-        if (this.secureConnection)
-            connection = (HttpsURLConnection)chUrl.openConnection();
-        else
-            connection = (HttpURLConnection)chUrl.openConnection();
+            if (!breaker.allowRequest())
+                throw new CircuitBreaker.OpenException();
 
-        if (null != this.token)
-            connection.setRequestProperty("Client-Token", this.token);
+            Transport.Response response;
+            try
+            {
+                response = this.transport.send(request);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                breaker.onFailure();
+                if (attempt >= policy.getMaxAttempts() || !(e instanceof IOException))
+                    throw e;
+
+                log.warning("Attempt " + attempt + " of " + request.getUrl() + " failed: " + e);
+                backoff(policy.delay(attempt, null));
+                continue;
+            }
+
+            int status = response.getStatus();
+            if (CircuitBreaker.isFailure(status))
+                breaker.onFailure();
+            else
+                breaker.onSuccess();
+
+            if (attempt >= policy.getMaxAttempts() || !policy.retryOn(status))
+                return response;
+
+            log.warning("Attempt " + attempt + " of " + request.getUrl() + " failed with status " + status);
+            long delay = policy.delay(attempt, response.getHeader("Retry-After"));
+            response.close();
+            backoff(delay);
+        }
+    }
 
-        return connection;
+    private static void backoff(final long nanos)
+            throws InterruptedIOException
+    {
+        try
+        {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
     }
 
 
-    public synchronized void pull()
+    /**
+     * Pull configuration from the ConfigHub server.  If another pull is already in progress, this call
+     * joins it, and returns its result instead of making another request.  If a pull freshness window
+     * is set, and last pull completed within it, this call returns right away.
+     * <br>
+     * Error response of the server fails the pull only until configuration is loaded.  After that,
+     * it is logged, and current configuration keeps being served.
+     *
+     * @throws ConfigHubException if configuration cannot be pulled
+     */
+    public void pull()
             throws ConfigHubException
     {
         try
         {
-            HttpURLConnection connection = getHttpsConnection("/rest/pull");
+            sharedPull(null).join();
+        }
+        catch (CompletionException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+
+            throw new ConfigHubException("Failed to get configuration: " + e.getCause());
+        }
+    }
 
-            connection.setRequestProperty("Context", this.context);
-            connection.setRequestProperty("Repository-Date", this.date);
-            connection.setRequestProperty("Tag", this.tag);
+    /*
+     * Single-flight pull: start a pull unless one is in flight, or last one is still fresh.
+     * Pull runs on the executor, or in the calling thread if executor is null.
+     */
+    private CompletableFuture<Void> sharedPull(final Executor executor)
+    {
+        while (true)
+        {
+            long completed = this.lastPullCompleted;
+            if (this.pullFreshness > 0 && 0 != completed && System.nanoTime() - completed < this.pullFreshness)
+                return CompletableFuture.completedFuture(null);
 
-            connection.setRequestProperty("Application-Name", this.applicationName);
-            connection.setRequestProperty("Security-Profile-Auth", null == this.securityGroupAuth ? null :
-                    (new Gson()).toJson(this.securityGroupAuth));
-            connection.setRequestProperty("Include-Comments", this.includeComments ? "true" : "false");
-            connection.setRequestProperty("Include-Value-Context", this.includeContext ? "true" : "false");
+            CompletableFuture<Void> current = this.inFlightPull.get();
+            if (null != current)
+                return current;
 
-            int code = connection.getResponseCode();
+            CompletableFuture<Void> pull = new CompletableFuture<>();
+            if (!this.inFlightPull.compareAndSet(null, pull))
+                continue;
 
-            switch (code)
-            {
-                case 200:
+            Runnable task = () -> {
+                try
                 {
-                    InputStreamReader io = new InputStreamReader(connection.getInputStream());
-                    BufferedReader in = new BufferedReader(io);
+                    if (doPull())
+                        this.lastPullCompleted = System.nanoTime();
 
-                    String line;
-                    StringBuilder sb = new StringBuilder();
-                    while ((line = in.readLine()) != null)
-                        sb.append(line);
-                    in.close();
-
-                    readJson(sb.toString());
-                    break;
+                    this.inFlightPull.set(null);
+                    pull.complete(null);
                 }
+                catch (Throwable t)
+                {
+                    this.inFlightPull.set(null);
+                    pull.completeExceptionally(t);
+                }
+            };
 
-                case 401:
-                    log.severe("Token no longer authorized");
-                    break;
-
-                case 404:
-                    log.severe("Requested repository not found");
-                    break;
+            if (null == executor)
+                task.run();
+            else
+            {
+                try
+                {
+                    executor.execute(task);
+                }
+                catch (RuntimeException e)
+                {
+                    this.inFlightPull.set(null);
+                    pull.completeExceptionally(e);
+                }
+            }
 
-                case 406:
-                    log.severe("Invalid token");
-                    break;
+            return pull;
+        }
+    }
 
-                case 500:
-                    log.severe("ConfigHub - Internal server error");
-                    break;
+    /*
+     * Pull configuration once.  Returns true if server answered with the latest configuration (200)
+     * or confirmed the current one (304), so the pull can be reused for the freshness period.
+     */
+    private boolean doPull()
+            throws ConfigHubException
+    {
+        int status = 0;
+        try
+        {
+            Transport.Request request = request("GET", "/rest/pull")
+                    .header("Context", this.context)
+                    .header("Repository-Date", this.date)
+                    .header("Tag", this.tag)
+                    .header("Application-Name", this.applicationName)
+                    .header("Security-Profile-Auth", null == this.securityGroupAuth ? null :
+                            (new Gson()).toJson(this.securityGroupAuth))
+                    .header("Include-Comments", this.includeComments ? "true" : "false")
+                    .header("Include-Value-Context", this.includeContext ? "true" : "false");
+
+            if (this.compression)
+                request.header("Accept-Encoding", "gzip, deflate");
+
+            Snapshot current = this.snapshot;
+            request.header("If-None-Match", current.eTag)
+                   .header("If-Modified-Since", current.lastModified);
+
+            try (Transport.Response response = send(request, false))
+            {
+                status = response.getStatus();
+                switch (status)
+                {
+                    case 304:
+                        log.fine("Configuration not modified");
+                        return true;
+
+                    case 200:
+                    {
+                        try (Reader reader = new InputStreamReader(responseStream(response), StandardCharsets.UTF_8))
+                        {
+                            read(reader, response.getHeader("ETag"), response.getHeader("Last-Modified"));
+                        }
+
+                        writeCache();
+                        return true;
+                    }
+
+                    case 401:
+                        log.severe("Token no longer authorized");
+                        break;
+
+                    case 404:
+                        log.severe("Requested repository not found");
+                        break;
+
+                    case 406:
+                        log.severe("Invalid token");
+                        break;
+
+                    case 500:
+                        log.severe("ConfigHub - Internal server error");
+                        break;
+                }
             }
+        }
+        catch (CircuitBreaker.OpenException e)
+        {
+            // Fail fast, but keep serving configuration if there is any
+            if (0 != this.firstLoad.getCount())
+                throw new ConfigHubException("Failed to get configuration: " + e.getMessage());
 
+            log.fine("Pull skipped, serving current configuration: " + e.getMessage());
         }
         catch (Exception e)
         {
@@ -410,50 +1089,155 @@ public final class ConfigHub
             throw new ConfigHubException("Failed to get configuration: " + e.getMessage());
         }
 
+        // Error response fails the pull, unless there is configuration to keep serving
+        if (0 != status && 0 != this.firstLoad.getCount())
+            throw new ConfigHubException("Failed to get configuration: server responded with " + status);
+
+        return false;
     }
 
 
     /*
-     * Parse JSON configuration.
+     * Save the latest configuration as last-known-good.  Failure to write the cache does not fail the pull.
      */
-    private void readJson(String json)
-            throws ConfigHubException
+    private void writeCache()
     {
-        if (null == json)
+        if (null == this.cacheFile)
             return;
 
-        Gson gson = new Gson();
         try
         {
-            JsonObject data = gson.fromJson(json, JsonObject.class);
+            BinarySnapshot.write(this.snapshot, this.cacheFile);
+        }
+        catch (Exception e)
+        {
+            log.log(Level.WARNING, "Cannot write configuration cache " + this.cacheFile, e);
+        }
+    }
 
-            if (null != context && !context.equals(data.get("context").getAsString()))
-            {
-                String message = "Requested context '" + context + "' is not the same as context " +
-                        "in the configuration file: '" + data
-                        .get("context")
-                        .getAsString() + "'.";
+    /**
+     * Pull configuration without blocking the calling thread.  Pull runs on the executor set with
+     * {@link #setExecutor(Executor)}, or on the default executor.
+     *
+     * If a pull is already in progress, returned future completes with it.
+     *
+     * @return future completed when configuration is pulled, or completed exceptionally with
+     * ConfigHubException if pull failed
+     */
+    public CompletableFuture<Void> pullAsync()
+    {
+        return pullAsync(executor());
+    }
 
-                log.severe(message);
-                throw new ConfigHubException(message);
-            }
+    /**
+     * Pull configuration without blocking the calling thread.
+     *
+     * @param executor on which to run the pull
+     * @return future completed when configuration is pulled, or completed exceptionally with
+     * ConfigHubException if pull failed
+     */
+    public CompletableFuture<Void> pullAsync(Executor executor)
+    {
+        return sharedPull(executor);
+    }
 
-            String errorMessage = data.has("error") ? data.get("error").getAsString() : null;
+    /**
+     * Reuse a completed pull for the freshness period.  Calls to {@link #pull()} within this period
+     * after the last successful pull return without contacting the server.
+     *
+     * @param freshness period during which last pull is reused.  Zero disables reuse.  Default: 0.
+     * @param unit of the freshness period
+     * @return ConfigHub object
+     */
+    public ConfigHub setPullFreshness(long freshness, TimeUnit unit)
+    {
+        this.pullFreshness = unit.toNanos(Math.max(0, freshness));
+        return this;
+    }
 
-            if (null != errorMessage)
-            {
-                log.severe(errorMessage);
-                throw new ConfigHubException(errorMessage);
-            }
+    /**
+     * Wait until configuration is first loaded, either by a pull, or from a file or cache.
+     *
+     * @param timeout maximum time to wait
+     * @param unit of the timeout
+     * @return true if configuration is loaded, false if timeout elapsed first
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public boolean awaitFirstLoad(long timeout, TimeUnit unit)
+            throws InterruptedException
+    {
+        return this.firstLoad.await(timeout, unit);
+    }
+
+    /*
+     * Response body, decompressed according to its Content-Encoding as it is read.
+     */
+    private InputStream responseStream(final Transport.Response response)
+            throws IOException
+    {
+        InputStream in = this.transferStats.countReceived(response.getBody());
+        String encoding = response.getHeader("Content-Encoding");
+
+        if ("gzip".equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding))
+        {
+            in = new GZIPInputStream(in, 8192);
+        }
+        else if ("deflate".equalsIgnoreCase(encoding))
+        {
+            // Deflate should be zlib wrapped, but some servers send raw deflate data
+            in = new BufferedInputStream(in, 8192);
+            in.mark(2);
+            int cmf = in.read();
+            int flg = in.read();
+            in.reset();
+
+            boolean zlib = (cmf & 0x0F) == 8 && flg >= 0 && ((cmf << 8) | flg) % 31 == 0;
+            in = new InflaterInputStream(in, new Inflater(!zlib), 8192);
+        }
+
+        return this.transferStats.countReceivedDecoded(in);
+    }
+
+    /*
+     * Parse JSON configuration, and publish it as a new snapshot.
+     */
+    void readJson(String json, String eTag, String lastModified)
+            throws ConfigHubException
+    {
+        if (null == json)
+            return;
+
+        read(new StringReader(json), eTag, lastModified);
+    }
 
-            this.account = data.get("account").getAsString();
-            this.repositoryName = data.get("repo").getAsString();
+    /*
+     * Stream JSON configuration, and publish it as a new snapshot.
+     */
+    void read(Reader reader, String eTag, String lastModified)
+            throws ConfigHubException
+    {
+        try
+        {
+            JsonSnapshot data = JsonSnapshot.read(reader);
 
-            this.configJson = data.getAsJsonObject("properties");
-            this.properties.readJson();
+            if (null != data.error)
+            {
+                log.severe(data.error);
+                throw new ConfigHubException(data.error);
+            }
 
-            this.filesJson = data.getAsJsonObject("files");
-            this.files.readJson();
+            load(new Snapshot(data.context,
+                              data.account,
+                              data.repositoryName,
+                              data.data,
+                              data.files,
+                              eTag,
+                              lastModified,
+                              data.digest));
+        }
+        catch (ConfigHubException e)
+        {
+            throw e;
         }
         catch (Exception pe)
         {
@@ -462,5 +1246,25 @@ public final class ConfigHub
         }
     }
 
+    /*
+     * Verify that the snapshot is of the requested context, and publish it.
+     */
+    private void load(Snapshot snapshot)
+            throws ConfigHubException
+    {
+        if (null != context && !context.equals(snapshot.context))
+        {
+            String message = "Requested context '" + context + "' is not the same as context " +
+                    "in the configuration file: '" + snapshot.context + "'.";
+
+            log.severe(message);
+            throw new ConfigHubException(message);
+        }
+
+        this.account = snapshot.account;
+        this.repositoryName = snapshot.repositoryName;
 
+        publish(snapshot);
+        this.firstLoad.countDown();
+    }
 }
@@ -0,0 +1,172 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2016, ConfigHub, LLC (support@configHub.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+
+package com.confighub.client;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counter updated from hot paths, and pushed as one rolled up value per interval.  Updates are
+ * lock-free and do not allocate; contended updates are spread over striped cells.
+ * <br>
+ * Counters are created by {@link PushQueue#counter(String, String, Rollup)}, and rolled up by
+ * {@link PushQueue#enableCounterRollups(long, java.util.concurrent.TimeUnit)}.  An interval without
+ * updates pushes nothing.
+ */
+public final class Counter
+{
+    /**
+     * How updates in an interval are rolled up into the pushed value.
+     */
+    public enum Rollup
+    {
+        /**
+         * Sum of updates in the interval.
+         */
+        SUM,
+
+        /**
+         * Largest update in the interval.
+         */
+        MAX,
+
+        /**
+         * Smallest update in the interval.
+         */
+        MIN,
+
+        /**
+         * Last update in the interval.
+         */
+        LAST
+    }
+
+    final String name;
+    final String context;
+    final Rollup rollup;
+
+    // SUM is cumulative, and the pushed value is the difference from the last roll-up.  Reset of
+    // striped cells is not atomic, and would lose concurrent updates.
+    private final LongAdder sum;
+    private long rolledUpSum;
+
+    private final LongAccumulator accumulator;
+    private volatile long last;
+
+    private volatile boolean updated;
+
+    Counter(final String name, final String context, final Rollup rollup)
+    {
+        this.name = name;
+        this.context = context;
+        this.rollup = rollup;
+
+        this.sum = Rollup.SUM == rollup ? new LongAdder() : null;
+        if (Rollup.MAX == rollup)
+            this.accumulator = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        else if (Rollup.MIN == rollup)
+            this.accumulator = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        else
+            this.accumulator = null;
+    }
+
+    /**
+     * Same as <code>update(1)</code>.
+     */
+    public void increment()
+    {
+        update(1);
+    }
+
+    /**
+     * Record an update: added to a SUM, compared by MAX and MIN, and kept by LAST.
+     *
+     * @param value of the update
+     */
+    public void update(final long value)
+    {
+        switch (this.rollup)
+        {
+            case SUM:
+                this.sum.add(value);
+                break;
+
+            case LAST:
+                this.last = value;
+                break;
+
+            default:
+                this.accumulator.accumulate(value);
+        }
+
+        // Read before write keeps the flag's cache line shared between updating threads
+        if (!this.updated)
+            this.updated = true;
+    }
+
+    /**
+     * @return Rollup of this counter
+     */
+    public Rollup getRollup()
+    {
+        return this.rollup;
+    }
+
+    /*
+     * Value for the interval since the last roll-up, or null if counter was not updated.  Updates
+     * concurrent with the roll-up are pushed with the next one; MAX and MIN may miss them.  Called
+     * by one thread at a time.
+     */
+    Long rollUp()
+    {
+        if (!this.updated)
+            return null;
+
+        // Cleared first, so an update racing with the roll-up is seen by the next one
+        this.updated = false;
+
+        switch (this.rollup)
+        {
+            case SUM:
+                long total = this.sum.sum();
+                long interval = total - this.rolledUpSum;
+                this.rolledUpSum = total;
+                return interval;
+
+            case LAST:
+                return this.last;
+
+            default:
+                long value = this.accumulator.getThenReset();
+                return value == identity() ? null : value;
+        }
+    }
+
+    private long identity()
+    {
+        return Rollup.MAX == this.rollup ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+}
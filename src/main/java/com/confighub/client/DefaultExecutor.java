@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2016, ConfigHub, LLC (support@configHub.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+
+package com.confighub.client;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/*
+ * Executor of asynchronous pulls and pushes, when application does not supply one.  On a JDK with
+ * virtual threads, each task runs on a new virtual thread.  Otherwise, tasks run on a small pool of
+ * daemon threads, which time out when idle.
+ */
+final class DefaultExecutor
+{
+    private static final int POOL_SIZE = 4;
+
+    private DefaultExecutor() { }
+
+    private static final class Holder
+    {
+        static final Executor INSTANCE = create();
+    }
+
+    static Executor get()
+    {
+        return Holder.INSTANCE;
+    }
+
+    private static Executor create()
+    {
+        try
+        {
+            // Executors.newVirtualThreadPerTaskExecutor() exists on JDK 21+; this client is built for Java 8
+            Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (Executor)factory.invoke(null);
+        }
+        catch (NoSuchMethodException e)
+        {
+            // Not available on this JDK
+        }
+        catch (Exception e)
+        {
+            ConfigHub.log.log(Level.FINE, "Virtual threads not available", e);
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE,
+                                                         60, TimeUnit.SECONDS,
+                                                         new LinkedBlockingQueue<>(),
+                                                         r -> {
+                                                             Thread t = new Thread(r, "ConfigHub-" + count.incrementAndGet());
+                                                             t.setDaemon(true);
+                                                             return t;
+                                                         });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
@@ -1,16 +1,13 @@
 package com.confighub.client;
 
 import com.confighub.client.error.ConfigHubException;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
 /**
  * Files Object holds all references to files that were requested and pulled.<br>
@@ -35,7 +32,7 @@ import java.util.Set;
 public class Files
 {
     private final ConfigHub configHub;
-    private final Map<String, String> files = new HashMap<>();
+    private final Snapshot snapshot;
 
     /**
      * @param configHub Object
@@ -43,12 +40,43 @@ public class Files
     protected Files(final ConfigHub configHub)
     {
         this.configHub = configHub;
+        this.snapshot = null;
     }
 
+    /**
+     * @param snapshot to which files are pinned
+     */
+    Files(final Snapshot snapshot)
+    {
+        this.configHub = null;
+        this.snapshot = snapshot;
+    }
+
+    /*
+     * Files of a pinned snapshot, or of the latest snapshot published by ConfigHub.
+     */
+    private Map<String, String> files()
+    {
+        return null == this.snapshot ? this.configHub.getSnapshot().fileContents : this.snapshot.fileContents;
+    }
+
+    /**
+     * @return unmodifiable Set of file names of the snapshot
+     */
     public Set<String> getFileNames()
     {
-        if (null == files) return null;
-        return this.files.keySet();
+        return files().keySet();
+    }
+
+    /**
+     * Perform the action for each file.  Iterates the snapshot in place, without copying it.
+     *
+     * @param action called with file name and content
+     */
+    public void forEach(final BiConsumer<String, String> action)
+    {
+        for (Map.Entry<String, String> e : files().entrySet())
+            action.accept(e.getKey(), e.getValue());
     }
 
     /**
@@ -59,7 +87,7 @@ public class Files
      */
     public String get(final String fileName)
     {
-        return files.get(fileName.trim());
+        return files().get(fileName.trim());
     }
 
     /**
@@ -73,49 +101,21 @@ public class Files
     public void writeFile(String fileName, String output)
             throws IOException, ConfigHubException
     {
-        if (!this.files.containsKey(fileName))
+        String content = files().get(fileName);
+        if (null == content)
             throw new ConfigHubException("Requested file '" + fileName + "' not pulled.");
 
         File file = new File(output);
         file.getParentFile().mkdirs();
 
         FileWriter fw = new FileWriter(file);
-        fw.write(get(fileName));
+        fw.write(content);
         fw.close();
     }
 
 
     public boolean hasFile(String file)
     {
-        return this.files.containsKey(file);
-    }
-
-
-    /*
-     * Parse JSON configuration.
-     */
-    void readJson()
-            throws ConfigHubException
-    {
-        this.files.clear();
-        if (null == this.configHub.filesJson)
-            return;
-
-        try
-        {
-            Iterator<Map.Entry<String, JsonElement>> itt = this.configHub.filesJson.entrySet().iterator();
-
-            while (itt.hasNext())
-            {
-                Map.Entry<String, JsonElement> entry = itt.next();
-                JsonObject aFileJson = entry.getValue().getAsJsonObject();
-                files.put(entry.getKey(), aFileJson.get("content").getAsString());
-            }
-        }
-        catch (Exception pe)
-        {
-            pe.printStackTrace();
-            throw new ConfigHubException("Received invalid configuration.");
-        }
+        return files().containsKey(file);
     }
 }
@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2016, ConfigHub, LLC (support@configHub.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+
+package com.confighub.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Transport which answers requests in memory, without network I/O.  Useful in tests, and to benchmark
+ * pulls and pushes without measuring the network.
+ *
+ * <pre>
+ * {@code
+ * ConfigHub configHub = new ConfigHub("Account", "RepositoryName")
+ *          .setContext("Development;MyAppName")
+ *          .setTransport(new InMemoryTransport(request -> InMemoryTransport.response(200, configJson)));
+ *
+ * configHub.pull();
+ * }
+ * </pre>
+ */
+public class InMemoryTransport
+        implements Transport
+{
+    /**
+     * Produces a response for each request.
+     */
+    public interface Handler
+    {
+        Response handle(Request request)
+                throws IOException;
+    }
+
+    private final Handler handler;
+
+    /**
+     * @param handler which answers requests
+     */
+    public InMemoryTransport(final Handler handler)
+    {
+        this.handler = handler;
+    }
+
+    @Override
+    public Response send(final Request request)
+            throws IOException
+    {
+        return handler.handle(request);
+    }
+
+    /**
+     * @param status HTTP status code
+     * @param body response body, encoded as UTF-8
+     * @return response without headers
+     */
+    public static InMemoryResponse response(final int status, final String body)
+    {
+        return response(status, null == body ? new byte[0] : body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param status HTTP status code
+     * @param body response body
+     * @return response without headers
+     */
+    public static InMemoryResponse response(final int status, final byte[] body)
+    {
+        return new InMemoryResponse(status, body);
+    }
+
+    /**
+     * Response with a fixed body.  Headers are added with {@link #header(String, String)}.
+     */
+    public static final class InMemoryResponse
+            implements Response
+    {
+        private final int status;
+        private final byte[] body;
+        private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+        private InMemoryResponse(final int status, final byte[] body)
+        {
+            this.status = status;
+            this.body = body;
+        }
+
+        /**
+         * @param name of the header
+         * @param value of the header
+         * @return this response
+         */
+        public InMemoryResponse header(final String name, final String value)
+        {
+            this.headers.put(name, value);
+            return this;
+        }
+
+        @Override
+        public int getStatus()
+        {
+            return status;
+        }
+
+        @Override
+        public String getHeader(final String name)
+        {
+            return headers.get(name);
+        }
+
+        @Override
+        public InputStream getBody()
+        {
+            return new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2016, ConfigHub, LLC (support@configHub.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+
+package com.confighub.client;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Single pass reader and writer of the JSON configuration document:
+ *
+ * {
+ *   "context": "...", "account": "...", "repo": "...", "error": "...",
+ *   "properties": { "key": { "type": "Integer", "val": 3306, "deprecated": false, "encryption": "..." } },
+ *   "files": { "name": { "content": "..." } }
+ * }
+ *
+ * Values are created as they are read, without building a JSON tree of the document first.
+ * Unknown fields are skipped.
+ */
+final class JsonSnapshot
+{
+    String context;
+    String account;
+    String repositoryName;
+    String error;
+    final Map<String, Properties.Value> data = new HashMap<>();
+    final Map<String, String> files = new HashMap<>();
+
+    // SHA-256 of the document text, so an unchanged document is recognized without comparing values
+    byte[] digest;
+
+    private JsonSnapshot() { }
+
+    static JsonSnapshot read(final Reader reader)
+            throws IOException
+    {
+        JsonSnapshot document = new JsonSnapshot();
+        DigestReader digestReader = new DigestReader(reader);
+        JsonReader in = new JsonReader(digestReader);
+
+        in.beginObject();
+        while (in.hasNext())
+        {
+            switch (in.nextName())
+            {
+                case "context":
+                    document.context = readString(in);
+                    break;
+
+                case "account":
+                    document.account = readString(in);
+                    break;
+
+                case "repo":
+                    document.repositoryName = readString(in);
+                    break;
+
+                case "error":
+                    document.error = readString(in);
+                    break;
+
+                case "properties":
+                    if (skipNull(in))
+                        break;
+
+                    in.beginObject();
+                    while (in.hasNext())
+                    {
+                        String key = in.nextName();
+                        Properties.Value value = readValue(in);
+                        if (null != value)
+                            document.data.put(key, value);
+                    }
+                    in.endObject();
+                    break;
+
+                case "files":
+                    if (skipNull(in))
+                        break;
+
+                    in.beginObject();
+                    while (in.hasNext())
+                    {
+                        String name = in.nextName();
+                        String content = readFile(in);
+                        if (null != content)
+                            document.files.put(name, content);
+                    }
+                    in.endObject();
+                    break;
+
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        document.digest = digestReader.digest();
+        return document;
+    }
+
+    /*
+     * Reader computing a digest of the characters read through it.
+     */
+    private static final class DigestReader
+            extends FilterReader
+    {
+        private final MessageDigest digest;
+        private byte[] bytes = new byte[2048];
+
+        DigestReader(final Reader reader)
+        {
+            super(reader);
+            try
+            {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            }
+            catch (NoSuchAlgorithmException e)
+            {
+                // Every Java platform is required to support SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public int read()
+                throws IOException
+        {
+            int c = super.read();
+            if (c >= 0)
+            {
+                this.digest.update((byte)(c >> 8));
+                this.digest.update((byte)c);
+            }
+            return c;
+        }
+
+        @Override
+        public int read(final char[] buffer, final int offset, final int length)
+                throws IOException
+        {
+            int n = super.read(buffer, offset, length);
+            if (n > 0)
+            {
+                if (this.bytes.length < 2 * n)
+                    this.bytes = new byte[2 * n];
+
+                for (int i = 0; i < n; i++)
+                {
+                    char c = buffer[offset + i];
+                    this.bytes[2 * i] = (byte)(c >> 8);
+                    this.bytes[2 * i + 1] = (byte)c;
+                }
+                this.digest.update(this.bytes, 0, 2 * n);
+            }
+            return n;
+        }
+
+        byte[] digest()
+        {
+            return this.digest.digest();
+        }
+    }
+
+    private static Properties.Value readValue(final JsonReader in)
+            throws IOException
+    {
+        String type = null;
+        Object val = null;
+        boolean deprecated = false;
+        String encryptionGroup = null;
+        String context = null;
+
+        in.beginObject();
+        while (in.hasNext())
+        {
+            switch (in.nextName())
+            {
+                case "type":
+                    type = readString(in);
+                    break;
+
+                case "val":
+                    val = readVal(in);
+                    break;
+
+                case "deprecated":
+                    deprecated = Boolean.parseBoolean(readString(in));
+                    break;
+
+                case "encryption":
+                    encryptionGroup = readString(in);
+                    break;
+
+                case "context":
+                    if (in.peek() == JsonToken.STRING)
+                        context = in.nextString();
+                    else
+                        in.skipValue();
+                    break;
+
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return Properties.value(type, val, deprecated, encryptionGroup, context);
+    }
+
+    private static String readFile(final JsonReader in)
+            throws IOException
+    {
+        String content = null;
+
+        in.beginObject();
+        while (in.hasNext())
+        {
+            if ("content".equals(in.nextName()))
+                content = readString(in);
+            else
+                in.skipValue();
+        }
+        in.endObject();
+
+        return content;
+    }
+
+    /*
+     * Property value: Map for JSON objects, List for arrays, and String for anything else.
+     */
+    private static Object readVal(final JsonReader in)
+            throws IOException
+    {
+        switch (in.peek())
+        {
+            case BEGIN_OBJECT:
+            {
+                Map<String, String> map = new LinkedHashMap<>();
+                in.beginObject();
+                while (in.hasNext())
+                    map.put(in.nextName(), readString(in));
+                in.endObject();
+                return map;
+            }
+
+            case BEGIN_ARRAY:
+            {
+                List<String> list = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext())
+                    list.add(readString(in));
+                in.endArray();
+                return list;
+            }
+
+            default:
+                return readString(in);
+        }
+    }
+
+    private static String readString(final JsonReader in)
+            throws IOException
+    {
+        switch (in.peek())
+        {
+            case NULL:
+                in.nextNull();
+                return null;
+
+            case BOOLEAN:
+                return Boolean.toString(in.nextBoolean());
+
+            default:
+                return in.nextString();
+        }
+    }
+
+    private static boolean skipNull(final JsonReader in)
+            throws IOException
+    {
+        if (in.peek() != JsonToken.NULL)
+            return false;
+
+        in.nextNull();
+        return true;
+    }
+
+    /*
+     * Write snapshot in the same format it is read in.
+     */
+    static void write(final Snapshot snapshot, final Writer writer)
+            throws IOException
+    {
+        JsonWriter out = new JsonWriter(writer);
+        out.setIndent("  ");
+        out.setLenient(true);
+
+        out.beginObject();
+        out.name("context").value(snapshot.context);
+        out.name("account").value(snapshot.account);
+        out.name("repo").value(snapshot.repositoryName);
+
+        out.name("properties").beginObject();
+        for (Map.Entry<String, Properties.Value> entry : snapshot.data.entrySet())
+        {
+            out.name(entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+        out.endObject();
+
+        out.name("files").beginObject();
+        for (Map.Entry<String, String> entry : snapshot.fileContents.entrySet())
+        {
+            out.name(entry.getKey()).beginObject();
+            out.name("content").value(entry.getValue());
+            out.endObject();
+        }
+        out.endObject();
+
+        out.endObject();
+        out.flush();
+    }
+
+    private static void writeValue(final JsonWriter out, final Properties.Value value)
+            throws IOException
+    {
+        out.beginObject();
+        out.name("type").value(value.type());
+        out.name("val");
+
+        if (value.isList())
+        {
+            out.beginArray();
+            for (String item : value.getList())
+                out.value(item);
+            out.endArray();
+        }
+        else if (value.isMap())
+        {
+            out.beginObject();
+            for (Map.Entry<String, String> e : value.getMap().entrySet())
+                out.name(e.getKey()).value(e.getValue());
+            out.endObject();
+        }
+        else if (value.isBoolean())
+            out.value(value.getBoolean(false));
+        else if (value.isInteger() || value.isLong())
+            out.value(value.getLong(0L));
+        else if (value.isDouble())
+            out.value(value.getDouble());
+        else if (value.isFloat())
+            out.value(value.getFloat());
+        else
+            out.value(value.get());
+
+        if (value.deprecated)
+            out.name("deprecated").value(true);
+
+        if (null != value.encryptionGroup)
+            out.name("encryption").value(value.encryptionGroup);
+
+        if (null != value.context)
+            out.name("context").value(value.context);
+
+        out.endObject();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2016, ConfigHub, LLC (support@configHub.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+
+package com.confighub.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Index of property keys: a tree of dot separated key segments.  Keys under a prefix, and keys
+ * matching a pattern, are found by walking only the branches that can hold them.
+ *
+ * Index is immutable once built, and is shared by snapshots with the same keys.
+ */
+final class KeyIndex
+{
+    private static final class Node
+    {
+        // Key ending at this node, if there is one
+        String key;
+        Map<String, Node> children;
+
+        Node child(final String segment)
+        {
+            return null == this.children ? null : this.children.get(segment);
+        }
+
+        Node addChild(final String segment)
+        {
+            if (null == this.children)
+                this.children = new HashMap<>(4);
+
+            return this.children.computeIfAbsent(segment, s -> new Node());
+        }
+    }
+
+    private final Node root = new Node();
+
+    KeyIndex(final Collection<String> keys)
+    {
+        for (String key : keys)
+        {
+            Node node = this.root;
+            for (String segment : segments(key))
+                node = node.addChild(segment);
+            node.key = key;
+        }
+    }
+
+    /*
+     * Split on dots, keeping empty segments.
+     */
+    static List<String> segments(final String key)
+    {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        int dot;
+        while ((dot = key.indexOf('.', start)) >= 0)
+        {
+            segments.add(key.substring(start, dot));
+            start = dot + 1;
+        }
+        segments.add(key.substring(start));
+        return segments;
+    }
+
+    /*
+     * Keys under the prefix: keys starting with the prefix segments, followed by at least one more.
+     */
+    void keysUnder(final List<String> prefix, final Collection<String> keys)
+    {
+        Node node = this.root;
+        for (String segment : prefix)
+        {
+            node = node.child(segment);
+            if (null == node)
+                return;
+        }
+
+        if (null != node.children)
+        {
+            for (Node child : node.children.values())
+                collect(child, keys);
+        }
+    }
+
+    private static void collect(final Node node, final Collection<String> keys)
+    {
+        if (null != node.key)
+            keys.add(node.key);
+
+        if (null != node.children)
+        {
+            for (Node child : node.children.values())
+                collect(child, keys);
+        }
+    }
+
+    /*
+     * Keys matching the pattern segments, where segment "*" matches any one segment.
+     */
+    void find(final List<String> pattern, final Collection<String> keys)
+    {
+        find(this.root, pattern, 0, keys);
+    }
+
+    private static void find(final Node node, final List<String> pattern, final int i, final Collection<String> keys)
+    {
+        if (i == pattern.size())
+        {
+            if (null != node.key)
+                keys.add(node.key);
+            return;
+        }
+
+        if (null == node.children)
+            return;
+
+        String segment = pattern.get(i);
+        if ("*".equals(segment))
+        {
+            for (Node child : node.children.values())
+                find(child, pattern, i + 1, keys);
+        }
+        else
+        {
+            Node child = node.children.get(segment);
+            if (null != child)
+                find(child, pattern, i + 1, keys);
+        }
+    }
+}
@@ -25,14 +25,10 @@
 package com.confighub.client;
 
 import com.confighub.client.error.ConfigHubException;
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.reflect.TypeToken;
 
-import java.lang.reflect.Type;
+import java.math.BigDecimal;
 import java.util.*;
+import java.util.function.BiConsumer;
 
 /**
  * The Properties Object represents a set of properties. The Properties can be saved to a local file.
@@ -74,7 +70,10 @@ import java.util.*;
 public class Properties
 {
     private final ConfigHub configHub;
-    private Map<String, Value> data = new HashMap<>();
+    private final Snapshot snapshot;
+
+    // Prefix of keys read by a subtree view, including the trailing dot; empty for all keys
+    private final String prefix;
 
     //------------------------------------------------------------------------------------------------
     // API
@@ -103,7 +102,7 @@ public class Properties
      */
     public boolean isDeprecated(final String key)
     {
-        Value v = this.data.get(key);
+        Value v = data().get(absolute(key));
         return null != v && v.deprecated;
     }
 
@@ -134,7 +133,7 @@ public class Properties
     public boolean isInteger(final String key)
     {
         Value v = getProperty(key);
-        return null != v && v.isBoolean();
+        return null != v && v.isInteger();
     }
 
     /**
@@ -357,9 +356,162 @@ public class Properties
 
     /**
      * Searches for the property with the specified key in this property list.
+     * Unlike {@link #getBoolean(String, Boolean)}, this method does not allocate, and does not throw
+     * if the value cannot be read as a boolean.
+     *
+     * @param key property key
+     * @param defaultValue if key is not in the list, or its value cannot be read as boolean
+     * @return value as <code>boolean</code> in the property list with the specified key value
+     */
+    public boolean getBoolean(final String key, final boolean defaultValue)
+    {
+        Value v = getProperty(key);
+        if (null == v)
+            return defaultValue;
+
+        return v.getBoolean(defaultValue);
+    }
+
+    /**
+     * Searches for the property with the specified key in this property list.
+     * Unlike {@link #getInteger(String, Integer)}, this method does not allocate, and does not throw
+     * if the value cannot be read as an int.
+     *
+     * @param key property key
+     * @param defaultValue if key is not in the list, or its value cannot be read as int
+     * @return value as <code>int</code> in the property list with the specified key value
+     */
+    public int getInt(final String key, final int defaultValue)
+    {
+        Value v = getProperty(key);
+        if (null == v)
+            return defaultValue;
+
+        return v.getInt(defaultValue);
+    }
+
+    /**
+     * Searches for the property with the specified key in this property list.
+     * Unlike {@link #getLong(String, Long)}, this method does not allocate, and does not throw
+     * if the value cannot be read as a long.
+     *
+     * @param key property key
+     * @param defaultValue if key is not in the list, or its value cannot be read as long
+     * @return value as <code>long</code> in the property list with the specified key value
+     */
+    public long getLong(final String key, final long defaultValue)
+    {
+        Value v = getProperty(key);
+        if (null == v)
+            return defaultValue;
+
+        return v.getLong(defaultValue);
+    }
+
+    /**
+     * Searches for the property with the specified key in this property list.
+     * Unlike {@link #getDouble(String, Double)}, this method does not allocate, and does not throw
+     * if the value cannot be read as a double.
+     *
+     * @param key property key
+     * @param defaultValue if key is not in the list, or its value cannot be read as double
+     * @return value as <code>double</code> in the property list with the specified key value
+     */
+    public double getDouble(final String key, final double defaultValue)
+    {
+        Value v = getProperty(key);
+        if (null == v)
+            return defaultValue;
+
+        return v.getDouble(defaultValue);
+    }
+
+    /**
+     * Searches for the property with the specified key in this property list.
+     * Unlike {@link #getFloat(String, Float)}, this method does not allocate, and does not throw
+     * if the value cannot be read as a float.
      *
      * @param key property key
-     * @return value as <code>List</code> in the property list with the specified key value
+     * @param defaultValue if key is not in the list, or its value cannot be read as float
+     * @return value as <code>float</code> in the property list with the specified key value
+     */
+    public float getFloat(final String key, final float defaultValue)
+    {
+        Value v = getProperty(key);
+        if (null == v)
+            return defaultValue;
+
+        return v.getFloat(defaultValue);
+    }
+
+    /**
+     * Searches for the property with the specified key in this property list.
+     *
+     * @param key property key
+     * @return boolean value, or empty if key is not in the list or its value cannot be read as boolean
+     */
+    public Optional<Boolean> findBoolean(final String key)
+    {
+        Value v = getProperty(key);
+        if (null == v)
+            return Optional.empty();
+
+        return v.findBoolean();
+    }
+
+    /**
+     * Searches for the property with the specified key in this property list.
+     * Returned OptionalInt is cached with the value, so repeated reads do not allocate.
+     *
+     * @param key property key
+     * @return int value, or empty if key is not in the list or its value cannot be read as int
+     */
+    public OptionalInt findInt(final String key)
+    {
+        Value v = getProperty(key);
+        if (null == v)
+            return OptionalInt.empty();
+
+        return v.findInt();
+    }
+
+    /**
+     * Searches for the property with the specified key in this property list.
+     * Returned OptionalLong is cached with the value, so repeated reads do not allocate.
+     *
+     * @param key property key
+     * @return long value, or empty if key is not in the list or its value cannot be read as long
+     */
+    public OptionalLong findLong(final String key)
+    {
+        Value v = getProperty(key);
+        if (null == v)
+            return OptionalLong.empty();
+
+        return v.findLong();
+    }
+
+    /**
+     * Searches for the property with the specified key in this property list.
+     * Returned OptionalDouble is cached with the value, so repeated reads do not allocate.
+     *
+     * @param key property key
+     * @return double value, or empty if key is not in the list or its value cannot be read as double
+     */
+    public OptionalDouble findDouble(final String key)
+    {
+        Value v = getProperty(key);
+        if (null == v)
+            return OptionalDouble.empty();
+
+        return v.findDouble();
+    }
+
+    /**
+     * Searches for the property with the specified key in this property list.
+     *
+     * @param key property key
+     * @return value as unmodifiable <code>List</code> in the property list with the specified key value
      */
     public List<String> getList(final String key)
     {
@@ -371,7 +523,7 @@ public class Properties
      *
      * @param key property key
      * @param defaultValue if key is not in the list, return this defaultValue
-     * @return value as <code>List</code> in the property list with the specified key value
+     * @return value as unmodifiable <code>List</code> in the property list with the specified key value
      */
     public List<String> getList(final String key, List<String> defaultValue)
     {
@@ -386,7 +538,7 @@ public class Properties
      * Searches for the property with the specified key in this property list.
      *
      * @param key property key
-     * @return value as <code>Map</code> in the property list with the specified key value
+     * @return value as unmodifiable <code>Map</code> in the property list with the specified key value
      */
     public Map<String, String> getMap(final String key)
     {
@@ -398,7 +550,7 @@ public class Properties
      *
      * @param key property key
      * @param defaultValue if key is not in the list, return this defaultValue
-     * @return value as <code>Map</code> in the property list with the specified key value
+     * @return value as unmodifiable <code>Map</code> in the property list with the specified key value
      */
     public Map<String, String> getMap(final String key, Map<String, String> defaultValue)
     {
@@ -411,19 +563,231 @@ public class Properties
 
 
     /**
-     * Get all configuration keys.
+     * Bind a property key to a handle, for reads on hot code paths without key lookups.
+     *
+     * @param key property key
+     * @param defaultValue returned if key is not present
+     * @return handle reading value as <code>String</code>
+     */
+    public PropertyHandle.StringHandle stringHandle(final String key, final String defaultValue)
+    {
+        return new PropertyHandle.StringHandle(this, absolute(key), defaultValue);
+    }
+
+    /**
+     * Bind a property key to a handle, for reads on hot code paths without key lookups.
+     *
+     * @param key property key
+     * @param defaultValue returned if key is not present, or cannot be read as boolean
+     * @return handle reading value as <code>boolean</code>
+     */
+    public PropertyHandle.BooleanHandle booleanHandle(final String key, final boolean defaultValue)
+    {
+        return new PropertyHandle.BooleanHandle(this, absolute(key), defaultValue);
+    }
+
+    /**
+     * Bind a property key to a handle, for reads on hot code paths without key lookups.
+     *
+     * @param key property key
+     * @param defaultValue returned if key is not present, or cannot be read as int
+     * @return handle reading value as <code>int</code>
+     */
+    public PropertyHandle.IntHandle intHandle(final String key, final int defaultValue)
+    {
+        return new PropertyHandle.IntHandle(this, absolute(key), defaultValue);
+    }
+
+    /**
+     * Bind a property key to a handle, for reads on hot code paths without key lookups.
+     *
+     * @param key property key
+     * @param defaultValue returned if key is not present, or cannot be read as long
+     * @return handle reading value as <code>long</code>
+     */
+    public PropertyHandle.LongHandle longHandle(final String key, final long defaultValue)
+    {
+        return new PropertyHandle.LongHandle(this, absolute(key), defaultValue);
+    }
+
+    /**
+     * Bind a property key to a handle, for reads on hot code paths without key lookups.
+     *
+     * @param key property key
+     * @param defaultValue returned if key is not present, or cannot be read as double
+     * @return handle reading value as <code>double</code>
+     */
+    public PropertyHandle.DoubleHandle doubleHandle(final String key, final double defaultValue)
+    {
+        return new PropertyHandle.DoubleHandle(this, absolute(key), defaultValue);
+    }
+
+    /**
+     * Bind a property key to a handle, for reads on hot code paths without key lookups.
+     *
+     * @param key property key
+     * @param defaultValue returned if key is not present, or cannot be read as float
+     * @return handle reading value as <code>float</code>
+     */
+    public PropertyHandle.FloatHandle floatHandle(final String key, final float defaultValue)
+    {
+        return new PropertyHandle.FloatHandle(this, absolute(key), defaultValue);
+    }
+
+    /**
+     * Get all configuration keys.  For the whole configuration, returns the key set of the snapshot
+     * without copying it; a prefix view copies the keys under its prefix on each call.
      *
-     * @return Set of property keys
+     * @return unmodifiable Set of property keys of the snapshot
      */
     public Set<String> getKeys()
     {
+        // Keys of a snapshot never change, so its key set is returned as is
+        if (this.prefix.isEmpty())
+            return data().keySet();
+
         Set<String> keys = new HashSet<>();
-        for (String key : this.data.keySet())
-            keys.add(key);
+        for (String key : keysUnderPrefix(snapshot()))
+            keys.add(key.substring(this.prefix.length()));
+
+        return Collections.unmodifiableSet(keys);
+    }
+
+    /**
+     * Perform the action for each property, with its value as a String, as returned by
+     * {@link #get(String)}.  Iterates the snapshot in place, without copying it.
+     *
+     * @param action called with key and value
+     */
+    public void forEach(final BiConsumer<String, String> action)
+    {
+        // Keys and values are read from the same snapshot, even if a pull publishes another
+        Snapshot snapshot = snapshot();
+        if (this.prefix.isEmpty())
+        {
+            for (Map.Entry<String, Value> e : snapshot.data.entrySet())
+                action.accept(e.getKey(), e.getValue().get());
+            return;
+        }
+
+        for (String key : keysUnderPrefix(snapshot))
+            action.accept(key.substring(this.prefix.length()), snapshot.data.get(key).get());
+    }
 
+    /**
+     * Visit each property with its typed value.  Iterates the snapshot in place, and primitive values
+     * are passed unboxed, so visiting allocates nothing per property.
+     *
+     * @param visitor of properties
+     */
+    public void accept(final PropertyVisitor visitor)
+    {
+        Snapshot snapshot = snapshot();
+        if (this.prefix.isEmpty())
+        {
+            for (Map.Entry<String, Value> e : snapshot.data.entrySet())
+                e.getValue().accept(e.getKey(), visitor);
+            return;
+        }
+
+        for (String key : keysUnderPrefix(snapshot))
+            snapshot.data.get(key).accept(key.substring(this.prefix.length()), visitor);
+    }
+
+    private List<String> keysUnderPrefix(final Snapshot snapshot)
+    {
+        List<String> keys = new ArrayList<>();
+        snapshot.keyIndex().keysUnder(KeyIndex.segments(this.prefix.substring(0, this.prefix.length() - 1)), keys);
         return keys;
     }
 
+    /**
+     * View of the keys under a prefix, read by their keys relative to the prefix.  For example,
+     * <code>properties.subtree("db.primary").getInteger("port")</code> reads <code>db.primary.port</code>.
+     * View of <code>configHub.properties</code> reads the latest snapshot; view of pinned properties
+     * reads the pinned snapshot.
+     *
+     * @param prefix dot separated key segments
+     * @return Properties of keys under the prefix
+     */
+    public Properties subtree(final String prefix)
+    {
+        String p = prefix.endsWith(".") ? prefix : prefix + ".";
+        return new Properties(this, this.prefix + p);
+    }
+
+    /**
+     * Find keys matching a pattern of dot separated segments, where segment <code>*</code> matches
+     * any one segment.  For example, <code>db.*.port</code> matches <code>db.primary.port</code> but
+     * not <code>db.port</code> or <code>db.primary.pool.port</code>.  Only branches of the key index
+     * that can match are visited.
+     *
+     * @param pattern of keys
+     * @return unmodifiable Set of matching keys, relative to this view
+     */
+    public Set<String> find(final String pattern)
+    {
+        Snapshot snapshot = snapshot();
+        List<String> matches = new ArrayList<>();
+        snapshot.keyIndex().find(KeyIndex.segments(absolute(pattern)), matches);
+
+        Set<String> keys = new HashSet<>();
+        for (String key : matches)
+            keys.add(key.substring(this.prefix.length()));
+
+        return Collections.unmodifiableSet(keys);
+    }
+
+
+    /**
+     * Bind keys under the prefix to methods of an interface.  Each call of a method of the returned
+     * object reads the value from the latest snapshot, or the pinned snapshot for pinned properties.
+     * Values of a snapshot are read once, when first called after the snapshot is published.
+     * <br>
+     * Each call goes through a proxy, which looks the method up, checks for a newer snapshot, and boxes
+     * primitive values.  On hot paths, use {@link #binding(Class, String)} with a record or bean, and
+     * read the fields of the instance returned by {@link Binding#get()}.
+     *
+     * @param type interface to bind
+     * @param prefix of bound keys, relative to these properties
+     * @param <T> bound type
+     * @return object implementing the interface
+     * @see Binding
+     */
+    public <T> T bind(final Class<T> type, final String prefix)
+    {
+        if (!type.isInterface())
+            throw new ConfigHubException(type.getName() + " is not an interface; use binding() for records and beans.");
+
+        return Binding.of(this, type, absolute(null == prefix ? "" : prefix)).live();
+    }
+
+    /**
+     * Bind keys under the prefix to an interface, record or bean, creating an instance for each
+     * snapshot.
+     *
+     * @param type interface, record or bean to bind
+     * @param prefix of bound keys, relative to these properties
+     * @param <T> bound type
+     * @return Binding, which creates instances of the type
+     */
+    public <T> Binding<T> binding(final Class<T> type, final String prefix)
+    {
+        return Binding.of(this, type, absolute(null == prefix ? "" : prefix));
+    }
+
+    /**
+     * Changes from a previous snapshot to the snapshot of these properties: keys added, removed, or
+     * with a changed typed value, and changed files.
+     *
+     * @param previous snapshot
+     * @return Changes between the snapshots
+     */
+    public Changes changesSince(final Snapshot previous)
+    {
+        return Changes.between(previous, snapshot());
+    }
+
 
     //------------------------------------------------------------------------------------------------
     // Structure
@@ -431,121 +795,170 @@ public class Properties
 
     private Value getProperty(final String key)
     {
-        Value v = this.data.get(key);
+        Value v = data().get(absolute(key));
         if (null == v)
             return null;
 
         if (v.deprecated)
-            ConfigHub.log.warning("Deprecated property '" + key + "' used.");
+            ConfigHub.log.warning("Deprecated property '" + absolute(key) + "' used.");
 
         return v;
     }
 
+    /*
+     * Pinned snapshot, or the latest snapshot published by ConfigHub.
+     */
+    Snapshot snapshot()
+    {
+        return null == this.snapshot ? this.configHub.getSnapshot() : this.snapshot;
+    }
+
+    /*
+     * Key of the whole configuration, for a key relative to this view.
+     */
+    private String absolute(final String key)
+    {
+        return this.prefix.isEmpty() ? key : this.prefix + key;
+    }
+
+    private Map<String, Value> data()
+    {
+        return snapshot().data;
+    }
+
+    /*
+     * Slot of a handle key.  Pinned properties have no slots, so their handles look up keys.
+     */
+    int slot(final String key)
+    {
+        return null == this.configHub ? -1 : this.configHub.slot(key);
+    }
+
     /**
      * @param configHub Object
      */
     protected Properties(final ConfigHub configHub)
     {
         this.configHub = configHub;
+        this.snapshot = null;
+        this.prefix = "";
+    }
+
+    /**
+     * @param snapshot to which properties are pinned
+     */
+    Properties(final Snapshot snapshot)
+    {
+        this.configHub = null;
+        this.snapshot = snapshot;
+        this.prefix = "";
+    }
+
+    private Properties(final Properties source, final String prefix)
+    {
+        this.configHub = source.configHub;
+        this.snapshot = source.snapshot;
+        this.prefix = prefix;
     }
 
     /*
-     * Parse JSON configuration.
+     * Create a property value from its type, as assigned in the ConfigHub UI, and a value read from
+     * configuration.  Scalar values are passed as String, Map and List values as Map and List.
      */
-    void readJson()
-            throws ConfigHubException
+    @SuppressWarnings("unchecked")
+    static Value value(final String type,
+                       final Object val,
+                       final boolean deprecated,
+                       final String encryptionGroup,
+                       final String context)
     {
-        this.data.clear();
+        if (null == val)
+            throw new IllegalArgumentException("Missing value");
 
-        if (null == this.configHub.configJson)
-            return;
+        if (null != encryptionGroup)
+            return new Value.TextValue((String)val, deprecated, encryptionGroup, context);
 
-        try
+        switch (null == type ? "Text" : type)
         {
-            Iterator<Map.Entry<String, JsonElement>> itt = this.configHub.configJson.entrySet().iterator();
+            case "Text":
+            case "Code":
+                return new Value.TextValue((String)val, deprecated, null, context);
 
-            while (itt.hasNext())
-            {
-                Map.Entry<String, JsonElement> entry = itt.next();
-                String key = entry.getKey();
-                JsonObject valueObject = entry.getValue().getAsJsonObject();
+            case "Boolean":
+                return new Value.BooleanValue(Boolean.parseBoolean((String)val), deprecated, null, context);
 
-                parseEntry(key, valueObject);
-            }
-        }
-        catch (Exception pe)
-        {
-            pe.printStackTrace();
-            throw new ConfigHubException("Received invalid configuration.");
-        }
-    }
+            case "Integer":
+                return new Value.IntegerValue(Value.parseInt((String)val), deprecated, null, context);
 
-    /*
-     * Parse a property
-     */
-    private void parseEntry(final String key, final JsonObject valueObject)
-    {
-        boolean deprecated = false;
-        String encryptionGroup = null;
+            case "Long":
+                return new Value.LongValue(Value.parseLong((String)val), deprecated, null, context);
 
-        if (valueObject.has("deprecated"))
-            deprecated = valueObject.get("deprecated").getAsBoolean();
+            case "Double":
+                return new Value.DoubleValue(Double.parseDouble((String)val), deprecated, null, context);
 
-        String type = valueObject.has("type") ? valueObject.get("type").getAsString() : "Text";
+            case "Float":
+                return new Value.FloatValue(Float.parseFloat((String)val), deprecated, null, context);
 
-        if (valueObject.has("encryption"))
-        {
-            encryptionGroup = valueObject.get("encryption").getAsString();
-            this.data.put(key, new Value.TextValue(valueObject.get("val"), deprecated, encryptionGroup));
-        } else
-        {
-            switch (type)
-            {
-                case "Text":
-                case "Code":
-                    this.data.put(key, new Value.TextValue(valueObject.get("val"), deprecated, encryptionGroup));
-                    break;
-
-                case "Boolean":
-                    this.data.put(key, new Value.BooleanValue(valueObject.get("val"), deprecated, encryptionGroup));
-                    break;
-
-                case "Integer":
-                    this.data.put(key, new Value.IntegerValue(valueObject.get("val"), deprecated, encryptionGroup));
-                    break;
-
-                case "Long":
-                    this.data.put(key, new Value.LongValue(valueObject.get("val"), deprecated, encryptionGroup));
-                    break;
-
-                case "Double":
-                    this.data.put(key, new Value.DoubleValue(valueObject.get("val"), deprecated, encryptionGroup));
-                    break;
-
-                case "Float":
-                    this.data.put(key, new Value.FloatValue(valueObject.get("val"), deprecated, encryptionGroup));
-                    break;
-
-                case "Map":
-                    this.data.put(key, new Value.MapValue(valueObject.get("val"), deprecated, encryptionGroup));
-                    break;
-
-                case "List":
-                    this.data.put(key, new Value.ListValue(valueObject.get("val"), deprecated, encryptionGroup));
-                    break;
-            }
+            case "Map":
+                return new Value.MapValue((Map<String, String>)val, deprecated, null, context);
+
+            case "List":
+                return new Value.ListValue((List<String>)val, deprecated, null, context);
+
+            default:
+                return null;
         }
     }
 
     abstract static class Value
     {
+        private static final Optional<Boolean> TRUE = Optional.of(Boolean.TRUE);
+        private static final Optional<Boolean> FALSE = Optional.of(Boolean.FALSE);
+
         final boolean deprecated;
         final String encryptionGroup;
 
-        Value(final boolean deprecated, final String encryptionGroup)
+        // Context of the value, if value context was requested
+        final String context;
+
+        // Lazily cached results of the find* methods.  Optionals are immutable, so a racy
+        // initialization can at worst create the same Optional twice.
+        private OptionalInt optionalInt;
+        private OptionalLong optionalLong;
+        private OptionalDouble optionalDouble;
+
+        Value(final boolean deprecated, final String encryptionGroup, final String context)
         {
             this.deprecated = deprecated;
             this.encryptionGroup = encryptionGroup;
+            this.context = context;
+        }
+
+        /*
+         * Integer and Long values are parsed the way Gson reads them from a JSON number.
+         */
+        static int parseInt(final String v)
+        {
+            try
+            {
+                return Integer.parseInt(v);
+            }
+            catch (NumberFormatException e)
+            {
+                return new BigDecimal(v).intValue();
+            }
+        }
+
+        static long parseLong(final String v)
+        {
+            try
+            {
+                return Long.parseLong(v);
+            }
+            catch (NumberFormatException e)
+            {
+                return new BigDecimal(v).longValue();
+            }
         }
 
         /**
@@ -588,6 +1001,13 @@ public class Properties
          */
         protected boolean isMap() { return false; }
 
+        /**
+         * @return name of the value type, as assigned in the ConfigHub UI
+         */
+        abstract String type();
+
+        abstract void accept(String key, PropertyVisitor visitor);
+
         abstract String get();
         abstract Boolean getBoolean();
         abstract Integer getInteger();
@@ -597,27 +1017,182 @@ public class Properties
         abstract List<String> getList();
         abstract Map<String, String> getMap();
 
+        /*
+         * Primitive reads.  Each returns the same conversion as its boxed counterpart, or the
+         * defaultValue where the boxed getter would throw.  They never allocate.
+         */
+        boolean hasBoolean() { return false; }
+        boolean hasInt() { return false; }
+        boolean hasLong() { return false; }
+        boolean hasDouble() { return false; }
+        boolean hasFloat() { return false; }
+
+        boolean getBoolean(final boolean defaultValue) { return defaultValue; }
+        int getInt(final int defaultValue) { return defaultValue; }
+        long getLong(final long defaultValue) { return defaultValue; }
+        double getDouble(final double defaultValue) { return defaultValue; }
+        float getFloat(final float defaultValue) { return defaultValue; }
+
+        Optional<Boolean> findBoolean()
+        {
+            if (!hasBoolean())
+                return Optional.empty();
+
+            return getBoolean(false) ? TRUE : FALSE;
+        }
+
+        OptionalInt findInt()
+        {
+            OptionalInt o = this.optionalInt;
+            if (null == o)
+                this.optionalInt = o = hasInt() ? OptionalInt.of(getInt(0)) : OptionalInt.empty();
+            return o;
+        }
+
+        OptionalLong findLong()
+        {
+            OptionalLong o = this.optionalLong;
+            if (null == o)
+                this.optionalLong = o = hasLong() ? OptionalLong.of(getLong(0L)) : OptionalLong.empty();
+            return o;
+        }
+
+        OptionalDouble findDouble()
+        {
+            OptionalDouble o = this.optionalDouble;
+            if (null == o)
+                this.optionalDouble = o = hasDouble() ? OptionalDouble.of(getDouble(0d)) : OptionalDouble.empty();
+            return o;
+        }
+
+        /*
+         * True if pushing the value would store what this value already holds.  Values are pushed as
+         * text, so scalars compare by their text form; maps and lists by their elements.
+         */
+        boolean sameAs(final Object value)
+        {
+            if (value instanceof Map)
+                return isMap() && value.equals(getMap());
+
+            if (value instanceof List)
+                return isList() && value.equals(getList());
+
+            return !isMap() && !isList() && value.toString().equals(get());
+        }
+
+        /*
+         * True if the other value has the same type and typed value.
+         */
+        boolean sameValue(final Value other)
+        {
+            if (this == other)
+                return true;
+
+            if (!type().equals(other.type()))
+                return false;
+
+            if (isMap())
+                return getMap().equals(other.getMap());
+
+            if (isList())
+                return getList().equals(other.getList());
+
+            return Objects.equals(get(), other.get());
+        }
+
+        ClassCastException cannotReadAs(final String targetType)
+        {
+            return new ClassCastException(type() + " value cannot be read as " + targetType);
+        }
+
 
         protected static class TextValue
                 extends Value
         {
             private final String value;
 
-            protected TextValue(final JsonElement v, final boolean deprecated, final String encryptionProfile)
+            // Numeric interpretation of the text, parsed on first numeric read
+            private Numbers numbers;
+
+            protected TextValue(final String v,
+                                final boolean deprecated,
+                                final String encryptionProfile,
+                                final String context)
             {
-                super(deprecated, encryptionProfile);
-                value = v.getAsString();
+                super(deprecated, encryptionProfile, context);
+                value = v;
             }
 
             protected TextValue(String v)
             {
-                super(false, null);
+                super(false, null, null);
                 value = v;
             }
 
+            /*
+             * Text parsed with Integer, Long, Double and Float parsers.  Immutable, so it can be
+             * published through a racy single-check.
+             */
+            private static final class Numbers
+            {
+                final boolean hasInt;
+                final int intValue;
+                final boolean hasLong;
+                final long longValue;
+                final boolean hasDouble;
+                final double doubleValue;
+                final boolean hasFloat;
+                final float floatValue;
+
+                Numbers(final String text)
+                {
+                    boolean hasInt = false, hasLong = false, hasDouble = false, hasFloat = false;
+                    int i = 0;
+                    long l = 0L;
+                    double d = 0d;
+                    float f = 0f;
+
+                    if (null != text)
+                    {
+                        try { i = Integer.parseInt(text); hasInt = true; } catch (NumberFormatException ignore) { }
+                        try { l = Long.parseLong(text); hasLong = true; } catch (NumberFormatException ignore) { }
+                        try { d = Double.parseDouble(text); hasDouble = true; } catch (NumberFormatException ignore) { }
+                        try { f = Float.parseFloat(text); hasFloat = true; } catch (NumberFormatException ignore) { }
+                    }
+
+                    this.hasInt = hasInt;
+                    this.intValue = i;
+                    this.hasLong = hasLong;
+                    this.longValue = l;
+                    this.hasDouble = hasDouble;
+                    this.doubleValue = d;
+                    this.hasFloat = hasFloat;
+                    this.floatValue = f;
+                }
+            }
+
+            private Numbers numbers()
+            {
+                Numbers n = this.numbers;
+                if (null == n)
+                    this.numbers = n = new Numbers(value);
+                return n;
+            }
+
+            private NumberFormatException notANumber()
+            {
+                return new NumberFormatException("For input string: \"" + value + "\"");
+            }
+
             @Override
             public boolean isString() { return true; }
 
+            @Override
+            String type() { return "Text"; }
+
+            @Override
+            void accept(final String key, final PropertyVisitor visitor) { visitor.visitText(key, value); }
+
             @Override
             String get()
             {
@@ -630,52 +1205,115 @@ public class Properties
             @Override
             Integer getInteger()
             {
-                return Integer.parseInt(value);
+                Numbers n = numbers();
+                if (!n.hasInt) throw notANumber();
+                return n.intValue;
             }
 
             @Override
             Long getLong()
             {
-                return Long.parseLong(value);
+                Numbers n = numbers();
+                if (!n.hasLong) throw notANumber();
+                return n.longValue;
             }
 
             @Override
             Double getDouble()
             {
-                return Double.parseDouble(value);
+                Numbers n = numbers();
+                if (!n.hasDouble) throw notANumber();
+                return n.doubleValue;
             }
 
             @Override
             Float getFloat()
             {
-                return Float.parseFloat(value);
+                Numbers n = numbers();
+                if (!n.hasFloat) throw notANumber();
+                return n.floatValue;
+            }
+
+            @Override
+            List<String> getList() { throw cannotReadAs("List"); }
+
+            @Override
+            Map<String, String> getMap() { throw cannotReadAs("Map"); }
+
+            @Override
+            boolean hasBoolean() { return true; }
+
+            @Override
+            boolean hasInt() { return numbers().hasInt; }
+
+            @Override
+            boolean hasLong() { return numbers().hasLong; }
+
+            @Override
+            boolean hasDouble() { return numbers().hasDouble; }
+
+            @Override
+            boolean hasFloat() { return numbers().hasFloat; }
+
+            @Override
+            boolean getBoolean(final boolean defaultValue) { return Boolean.parseBoolean(value); }
+
+            @Override
+            int getInt(final int defaultValue)
+            {
+                Numbers n = numbers();
+                return n.hasInt ? n.intValue : defaultValue;
+            }
+
+            @Override
+            long getLong(final long defaultValue)
+            {
+                Numbers n = numbers();
+                return n.hasLong ? n.longValue : defaultValue;
             }
 
             @Override
-            List<String> getList() { throw new ClassCastException(); }
+            double getDouble(final double defaultValue)
+            {
+                Numbers n = numbers();
+                return n.hasDouble ? n.doubleValue : defaultValue;
+            }
 
             @Override
-            Map<String, String> getMap() { throw new ClassCastException(); }
+            float getFloat(final float defaultValue)
+            {
+                Numbers n = numbers();
+                return n.hasFloat ? n.floatValue : defaultValue;
+            }
         }
 
         protected static class BooleanValue
                 extends Value
         {
-            private final Boolean value;
+            private final boolean value;
 
-            protected BooleanValue(final JsonElement v, final boolean deprecated, final String encryptionProfile)
+            protected BooleanValue(final boolean v,
+                                   final boolean deprecated,
+                                   final String encryptionProfile,
+                                   final String context)
             {
-                super(deprecated, encryptionProfile);
-                this.value = v.getAsBoolean();
+                super(deprecated, encryptionProfile, context);
+                this.value = v;
             }
 
             @Override
             public boolean isBoolean() { return true; }
 
+            @Override
+            String type() { return "Boolean"; }
+
+            @Override
+            void accept(final String key, final PropertyVisitor visitor) { visitor.visitBoolean(key, value); }
+
             @Override
             String get()
             {
-                return value.toString();
+                return Boolean.toString(value);
             }
 
             @Override
@@ -684,56 +1322,71 @@ public class Properties
             @Override
             Integer getInteger()
             {
-                throw new ClassCastException();
+                throw cannotReadAs("Integer");
             }
 
             @Override
             Long getLong()
             {
-                throw new ClassCastException();
+                throw cannotReadAs("Long");
             }
 
             @Override
             Double getDouble()
             {
-                throw new ClassCastException();
+                throw cannotReadAs("Double");
             }
 
             @Override
             Float getFloat()
             {
-                throw new ClassCastException();
+                throw cannotReadAs("Float");
             }
 
             @Override
-            List<String> getList() { throw new ClassCastException(); }
+            List<String> getList() { throw cannotReadAs("List"); }
+
+            @Override
+            Map<String, String> getMap() { throw cannotReadAs("Map"); }
 
             @Override
-            Map<String, String> getMap() { throw new ClassCastException(); }
+            boolean hasBoolean() { return true; }
+
+            @Override
+            boolean getBoolean(final boolean defaultValue) { return value; }
         }
 
         protected static class IntegerValue
                 extends Value
         {
-            private final Integer value;
+            private final int value;
 
-            protected IntegerValue(final JsonElement v, final boolean deprecated, final String encryptionProfile)
+            protected IntegerValue(final int v,
+                                   final boolean deprecated,
+                                   final String encryptionProfile,
+                                   final String context)
             {
-                super(deprecated, encryptionProfile);
-                this.value = v.getAsInt();
+                super(deprecated, encryptionProfile, context);
+                this.value = v;
             }
 
             @Override
             public boolean isInteger() { return true; }
 
+            @Override
+            String type() { return "Integer"; }
+
+            @Override
+            void accept(final String key, final PropertyVisitor visitor) { visitor.visitInt(key, value); }
+
             @Override
             String get()
             {
-                return value.toString();
+                return Integer.toString(value);
             }
 
             @Override
-            Boolean getBoolean() { throw new ClassCastException(); }
+            Boolean getBoolean() { throw cannotReadAs("Boolean"); }
 
             @Override
             Integer getInteger()
@@ -744,55 +1397,88 @@ public class Properties
             @Override
             Long getLong()
             {
-                return value.longValue();
+                return (long)value;
             }
 
             @Override
             Double getDouble()
             {
-                return value.doubleValue();
+                return (double)value;
             }
 
             @Override
             Float getFloat()
             {
-                return value.floatValue();
+                return (float)value;
             }
 
             @Override
-            List<String> getList() { throw new ClassCastException(); }
+            List<String> getList() { throw cannotReadAs("List"); }
+
+            @Override
+            Map<String, String> getMap() { throw cannotReadAs("Map"); }
+
+            @Override
+            boolean hasInt() { return true; }
 
             @Override
-            Map<String, String> getMap() { throw new ClassCastException(); }
+            boolean hasLong() { return true; }
+
+            @Override
+            boolean hasDouble() { return true; }
+
+            @Override
+            boolean hasFloat() { return true; }
+
+            @Override
+            int getInt(final int defaultValue) { return value; }
+
+            @Override
+            long getLong(final long defaultValue) { return value; }
+
+            @Override
+            double getDouble(final double defaultValue) { return value; }
+
+            @Override
+            float getFloat(final float defaultValue) { return value; }
         }
 
         protected static class LongValue
                 extends Value
         {
-            private final Long value;
+            private final long value;
 
-            protected LongValue(final JsonElement v, final boolean deprecated, final String encryptionProfile)
+            protected LongValue(final long v,
+                                final boolean deprecated,
+                                final String encryptionProfile,
+                                final String context)
             {
-                super(deprecated, encryptionProfile);
-                this.value = v.getAsLong();
+                super(deprecated, encryptionProfile, context);
+                this.value = v;
             }
 
             @Override
             public boolean isLong() { return true; }
 
+            @Override
+            String type() { return "Long"; }
+
+            @Override
+            void accept(final String key, final PropertyVisitor visitor) { visitor.visitLong(key, value); }
+
             @Override
             String get()
             {
-                return value.toString();
+                return Long.toString(value);
             }
 
             @Override
-            Boolean getBoolean() { throw new ClassCastException(); }
+            Boolean getBoolean() { throw cannotReadAs("Boolean"); }
 
             @Override
             Integer getInteger()
             {
-                return value.intValue();
+                return (int)value;
             }
 
             @Override
@@ -804,55 +1490,88 @@ public class Properties
             @Override
             Double getDouble()
             {
-                return value.doubleValue();
+                return (double)value;
             }
 
             @Override
             Float getFloat()
             {
-                return value.floatValue();
+                return (float)value;
             }
 
             @Override
-            List<String> getList() { throw new ClassCastException(); }
+            List<String> getList() { throw cannotReadAs("List"); }
+
+            @Override
+            Map<String, String> getMap() { throw cannotReadAs("Map"); }
+
+            @Override
+            boolean hasInt() { return true; }
+
+            @Override
+            boolean hasLong() { return true; }
+
+            @Override
+            boolean hasDouble() { return true; }
+
+            @Override
+            boolean hasFloat() { return true; }
+
+            @Override
+            int getInt(final int defaultValue) { return (int)value; }
 
             @Override
-            Map<String, String> getMap() { throw new ClassCastException(); }
+            long getLong(final long defaultValue) { return value; }
+
+            @Override
+            double getDouble(final double defaultValue) { return value; }
+
+            @Override
+            float getFloat(final float defaultValue) { return value; }
         }
 
         protected static class DoubleValue
                 extends Value
         {
-            private final Double value;
+            private final double value;
 
-            protected DoubleValue(final JsonElement v, final boolean deprecated, final String encryptionProfile)
+            protected DoubleValue(final double v,
+                                  final boolean deprecated,
+                                  final String encryptionProfile,
+                                  final String context)
             {
-                super(deprecated, encryptionProfile);
-                this.value = v.getAsDouble();
+                super(deprecated, encryptionProfile, context);
+                this.value = v;
             }
 
             @Override
             public boolean isDouble() { return true; }
 
+            @Override
+            String type() { return "Double"; }
+
+            @Override
+            void accept(final String key, final PropertyVisitor visitor) { visitor.visitDouble(key, value); }
+
             @Override
             String get()
             {
-                return value.toString();
+                return Double.toString(value);
             }
 
             @Override
-            Boolean getBoolean() { throw new ClassCastException(); }
+            Boolean getBoolean() { throw cannotReadAs("Boolean"); }
 
             @Override
             Integer getInteger()
             {
-                return value.intValue();
+                return (int)value;
             }
 
             @Override
             Long getLong()
             {
-                return value.longValue();
+                return (long)value;
             }
 
             @Override
@@ -864,55 +1583,88 @@ public class Properties
             @Override
             Float getFloat()
             {
-                return value.floatValue();
+                return (float)value;
             }
 
             @Override
-            List<String> getList() { throw new ClassCastException(); }
+            List<String> getList() { throw cannotReadAs("List"); }
+
+            @Override
+            Map<String, String> getMap() { throw cannotReadAs("Map"); }
+
+            @Override
+            boolean hasInt() { return true; }
+
+            @Override
+            boolean hasLong() { return true; }
 
             @Override
-            Map<String, String> getMap() { throw new ClassCastException(); }
+            boolean hasDouble() { return true; }
+
+            @Override
+            boolean hasFloat() { return true; }
+
+            @Override
+            int getInt(final int defaultValue) { return (int)value; }
+
+            @Override
+            long getLong(final long defaultValue) { return (long)value; }
+
+            @Override
+            double getDouble(final double defaultValue) { return value; }
+
+            @Override
+            float getFloat(final float defaultValue) { return (float)value; }
         }
 
         protected static class FloatValue
                 extends Value
         {
-            private final Float value;
+            private final float value;
 
-            protected FloatValue(final JsonElement v, final boolean deprecated, final String encryptionProfile)
+            protected FloatValue(final float v,
+                                 final boolean deprecated,
+                                 final String encryptionProfile,
+                                 final String context)
             {
-                super(deprecated, encryptionProfile);
-                this.value = v.getAsFloat();
+                super(deprecated, encryptionProfile, context);
+                this.value = v;
             }
 
             @Override
             public boolean isFloat() { return true; }
 
+            @Override
+            String type() { return "Float"; }
+
+            @Override
+            void accept(final String key, final PropertyVisitor visitor) { visitor.visitFloat(key, value); }
+
             @Override
             String get()
             {
-                return value.toString();
+                return Float.toString(value);
             }
 
             @Override
-            Boolean getBoolean() { throw new ClassCastException(); }
+            Boolean getBoolean() { throw cannotReadAs("Boolean"); }
 
             @Override
             Integer getInteger()
             {
-                return value.intValue();
+                return (int)value;
             }
 
             @Override
             Long getLong()
             {
-                return value.longValue();
+                return (long)value;
             }
 
             @Override
             Double getDouble()
             {
-                return value.doubleValue();
+                return (double)value;
             }
 
             @Override
@@ -922,66 +1674,101 @@ public class Properties
             }
 
             @Override
-            List<String> getList() { throw new ClassCastException(); }
+            List<String> getList() { throw cannotReadAs("List"); }
 
             @Override
-            Map<String, String> getMap() { throw new ClassCastException(); }
+            Map<String, String> getMap() { throw cannotReadAs("Map"); }
+
+            @Override
+            boolean hasInt() { return true; }
+
+            @Override
+            boolean hasLong() { return true; }
+
+            @Override
+            boolean hasDouble() { return true; }
+
+            @Override
+            boolean hasFloat() { return true; }
+
+            @Override
+            int getInt(final int defaultValue) { return (int)value; }
+
+            @Override
+            long getLong(final long defaultValue) { return (long)value; }
+
+            @Override
+            double getDouble(final double defaultValue) { return value; }
+
+            @Override
+            float getFloat(final float defaultValue) { return value; }
         }
 
         protected static class MapValue
                 extends Value
         {
+            // Unmodifiable, so it is shared with every reader
             private final Map<String, String> value;
-            private final String json;
 
-            protected MapValue(final JsonElement v, final boolean deprecated, final String encryptionProfile)
-            {
-                super(deprecated, encryptionProfile);
+            // Text form, created on first read as String
+            private String text;
 
-                Type mapType = new TypeToken<Map<String, String>>() {}.getType();
-                JsonObject obj = v.getAsJsonObject();
-                this.json = v.toString();
-                this.value = new Gson().fromJson(obj, mapType);
+            protected MapValue(final Map<String, String> v,
+                               final boolean deprecated,
+                               final String encryptionProfile,
+                               final String context)
+            {
+                super(deprecated, encryptionProfile, context);
+                this.value = Collections.unmodifiableMap(v);
             }
 
             @Override
             public boolean isMap() { return true; }
 
+            @Override
+            String type() { return "Map"; }
+
+            @Override
+            void accept(final String key, final PropertyVisitor visitor) { visitor.visitMap(key, value); }
+
             @Override
             String get()
             {
-                return value.toString();
+                String t = this.text;
+                if (null == t)
+                    this.text = t = value.toString();
+                return t;
             }
 
             @Override
-            Boolean getBoolean() { throw new ClassCastException(); }
+            Boolean getBoolean() { throw cannotReadAs("Boolean"); }
 
             @Override
             Integer getInteger()
             {
-                throw new ClassCastException();
+                throw cannotReadAs("Integer");
             }
 
             @Override
             Long getLong()
             {
-                throw new ClassCastException();
+                throw cannotReadAs("Long");
             }
 
             @Override
             Double getDouble()
             {
-                throw new ClassCastException();
+                throw cannotReadAs("Double");
             }
 
             @Override
             Float getFloat()
             {
-                throw new ClassCastException();
+                throw cannotReadAs("Float");
             }
 
             @Override
-            List<String> getList() { throw new ClassCastException(); }
+            List<String> getList() { throw cannotReadAs("List"); }
 
             @Override
             Map<String, String> getMap() { return value; }
@@ -990,63 +1777,71 @@ public class Properties
         protected static class ListValue
                 extends Value
         {
+            // Unmodifiable, so it is shared with every reader
             private final List<String> value;
-            private final String json;
 
-            protected ListValue(final JsonElement v, final boolean deprecated, final String encryptionProfile)
-            {
-                super(deprecated, encryptionProfile);
+            // Text form, created on first read as String
+            private String text;
 
-                Type listType = new TypeToken<List<String>>() {}.getType();
-                JsonArray arr = v.getAsJsonArray();
-                this.json = v.toString();
-                this.value = new Gson().fromJson(arr, listType);
+            protected ListValue(final List<String> v,
+                                final boolean deprecated,
+                                final String encryptionProfile,
+                                final String context)
+            {
+                super(deprecated, encryptionProfile, context);
+                this.value = Collections.unmodifiableList(v);
             }
 
             @Override
             public boolean isList() { return true; }
 
             @Override
-            public boolean isMap() { return true; }
+            String type() { return "List"; }
+
+            @Override
+            void accept(final String key, final PropertyVisitor visitor) { visitor.visitList(key, value); }
 
             @Override
             String get()
             {
-                return value.toString();
+                String t = this.text;
+                if (null == t)
+                    this.text = t = value.toString();
+                return t;
             }
 
             @Override
-            Boolean getBoolean() { throw new ClassCastException(); }
+            Boolean getBoolean() { throw cannotReadAs("Boolean"); }
 
             @Override
             Integer getInteger()
             {
-                throw new ClassCastException();
+                throw cannotReadAs("Integer");
             }
 
             @Override
             Long getLong()
             {
-                throw new ClassCastException();
+                throw cannotReadAs("Long");
             }
 
             @Override
             Double getDouble()
             {
-                throw new ClassCastException();
+                throw cannotReadAs("Double");
             }
 
             @Override
             Float getFloat()
             {
-                throw new ClassCastException();
+                throw cannotReadAs("Float");
             }
 
             @Override
             List<String> getList() { return value; }
 
             @Override
-            Map<String, String> getMap() { throw new ClassCastException(); }
+            Map<String, String> getMap() { throw cannotReadAs("Map"); }
         }
     }
 }
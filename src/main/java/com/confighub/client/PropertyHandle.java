@@ -0,0 +1,321 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2016, ConfigHub, LLC (support@configHub.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+
+package com.confighub.client;
+
+/**
+ * PropertyHandle is a property key resolved once, for reading on hot code paths.  Each key is bound
+ * to a slot index that stays the same across pulls, and every pull resolves the values of all bound
+ * keys into an array.  Reading a handle is an array load of an already converted value, with no
+ * key hashing or map lookup.
+ * <br>
+ *
+ * <pre>
+ * {@code
+ * static final PropertyHandle.IntHandle DB_PORT = configHub.properties.intHandle("db.port", 5432);
+ *
+ * int dbPort = DB_PORT.get();
+ * }
+ * </pre>
+ *
+ * Handles always read the latest snapshot.  To read a pinned snapshot, use <code>get(snapshot)</code>.
+ * Unlike <code>Properties</code> getters, handles do not log a warning on each read of a deprecated
+ * property; the warning is logged once, when handle is created.
+ */
+public abstract class PropertyHandle
+{
+    private final Properties properties;
+    private final String key;
+    private final int slot;
+
+    PropertyHandle(final Properties properties, final String key)
+    {
+        this.properties = properties;
+        this.key = key;
+        this.slot = properties.slot(key);
+
+        Properties.Value v = properties.snapshot().data.get(key);
+        if (null != v && v.deprecated)
+            ConfigHub.log.warning("Deprecated property '" + key + "' bound to a handle.");
+    }
+
+    /**
+     * @return property key of this handle
+     */
+    public String getKey()
+    {
+        return key;
+    }
+
+    /**
+     * @return true if the property is present in the latest snapshot
+     */
+    public boolean isPresent()
+    {
+        return null != value();
+    }
+
+    Properties.Value value()
+    {
+        return this.properties.snapshot().value(this.slot, this.key);
+    }
+
+    Properties.Value value(final Snapshot snapshot)
+    {
+        return snapshot.value(this.slot, this.key);
+    }
+
+    /**
+     * Handle of a property read as <code>String</code>.
+     */
+    public static final class StringHandle
+            extends PropertyHandle
+    {
+        private final String defaultValue;
+
+        StringHandle(final Properties properties, final String key, final String defaultValue)
+        {
+            super(properties, key);
+            this.defaultValue = defaultValue;
+        }
+
+        /**
+         * @return value from the latest snapshot, or default value if key is not present
+         */
+        public String get()
+        {
+            return get(value());
+        }
+
+        /**
+         * @param snapshot pinned snapshot
+         * @return value from the snapshot, or default value if key is not present
+         */
+        public String get(final Snapshot snapshot)
+        {
+            return get(value(snapshot));
+        }
+
+        private String get(final Properties.Value v)
+        {
+            return null == v ? this.defaultValue : v.get();
+        }
+    }
+
+    /**
+     * Handle of a property read as <code>boolean</code>.
+     */
+    public static final class BooleanHandle
+            extends PropertyHandle
+    {
+        private final boolean defaultValue;
+
+        BooleanHandle(final Properties properties, final String key, final boolean defaultValue)
+        {
+            super(properties, key);
+            this.defaultValue = defaultValue;
+        }
+
+        /**
+         * @return value from the latest snapshot, or default value if key is not present, or cannot
+         * be read as boolean
+         */
+        public boolean get()
+        {
+            return get(value());
+        }
+
+        /**
+         * @param snapshot pinned snapshot
+         * @return value from the snapshot, or default value if key is not present, or cannot be read
+         * as boolean
+         */
+        public boolean get(final Snapshot snapshot)
+        {
+            return get(value(snapshot));
+        }
+
+        private boolean get(final Properties.Value v)
+        {
+            return null == v ? this.defaultValue : v.getBoolean(this.defaultValue);
+        }
+    }
+
+    /**
+     * Handle of a property read as <code>int</code>.
+     */
+    public static final class IntHandle
+            extends PropertyHandle
+    {
+        private final int defaultValue;
+
+        IntHandle(final Properties properties, final String key, final int defaultValue)
+        {
+            super(properties, key);
+            this.defaultValue = defaultValue;
+        }
+
+        /**
+         * @return value from the latest snapshot, or default value if key is not present, or cannot
+         * be read as int
+         */
+        public int get()
+        {
+            return get(value());
+        }
+
+        /**
+         * @param snapshot pinned snapshot
+         * @return value from the snapshot, or default value if key is not present, or cannot be read
+         * as int
+         */
+        public int get(final Snapshot snapshot)
+        {
+            return get(value(snapshot));
+        }
+
+        private int get(final Properties.Value v)
+        {
+            return null == v ? this.defaultValue : v.getInt(this.defaultValue);
+        }
+    }
+
+    /**
+     * Handle of a property read as <code>long</code>.
+     */
+    public static final class LongHandle
+            extends PropertyHandle
+    {
+        private final long defaultValue;
+
+        LongHandle(final Properties properties, final String key, final long defaultValue)
+        {
+            super(properties, key);
+            this.defaultValue = defaultValue;
+        }
+
+        /**
+         * @return value from the latest snapshot, or default value if key is not present, or cannot
+         * be read as long
+         */
+        public long get()
+        {
+            return get(value());
+        }
+
+        /**
+         * @param snapshot pinned snapshot
+         * @return value from the snapshot, or default value if key is not present, or cannot be read
+         * as long
+         */
+        public long get(final Snapshot snapshot)
+        {
+            return get(value(snapshot));
+        }
+
+        private long get(final Properties.Value v)
+        {
+            return null == v ? this.defaultValue : v.getLong(this.defaultValue);
+        }
+    }
+
+    /**
+     * Handle of a property read as <code>double</code>.
+     */
+    public static final class DoubleHandle
+            extends PropertyHandle
+    {
+        private final double defaultValue;
+
+        DoubleHandle(final Properties properties, final String key, final double defaultValue)
+        {
+            super(properties, key);
+            this.defaultValue = defaultValue;
+        }
+
+        /**
+         * @return value from the latest snapshot, or default value if key is not present, or cannot
+         * be read as double
+         */
+        public double get()
+        {
+            return get(value());
+        }
+
+        /**
+         * @param snapshot pinned snapshot
+         * @return value from the snapshot, or default value if key is not present, or cannot be read
+         * as double
+         */
+        public double get(final Snapshot snapshot)
+        {
+            return get(value(snapshot));
+        }
+
+        private double get(final Properties.Value v)
+        {
+            return null == v ? this.defaultValue : v.getDouble(this.defaultValue);
+        }
+    }
+
+    /**
+     * Handle of a property read as <code>float</code>.
+     */
+    public static final class FloatHandle
+            extends PropertyHandle
+    {
+        private final float defaultValue;
+
+        FloatHandle(final Properties properties, final String key, final float defaultValue)
+        {
+            super(properties, key);
+            this.defaultValue = defaultValue;
+        }
+
+        /**
+         * @return value from the latest snapshot, or default value if key is not present, or cannot
+         * be read as float
+         */
+        public float get()
+        {
+            return get(value());
+        }
+
+        /**
+         * @param snapshot pinned snapshot
+         * @return value from the snapshot, or default value if key is not present, or cannot be read
+         * as float
+         */
+        public float get(final Snapshot snapshot)
+        {
+            return get(value(snapshot));
+        }
+
+        private float get(final Properties.Value v)
+        {
+            return null == v ? this.defaultValue : v.getFloat(this.defaultValue);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2016, ConfigHub, LLC (support@configHub.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+
+package com.confighub.client;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Visitor of properties by their typed values, for {@link Properties#accept(PropertyVisitor)}.
+ * Numeric and boolean values are passed as primitives, so visiting them does not allocate.  Methods
+ * do nothing by default; override those for the types of interest.
+ */
+public interface PropertyVisitor
+{
+    default void visitText(String key, String value) { }
+
+    default void visitBoolean(String key, boolean value) { }
+
+    default void visitInt(String key, int value) { }
+
+    default void visitLong(String key, long value) { }
+
+    default void visitDouble(String key, double value) { }
+
+    default void visitFloat(String key, float value) { }
+
+    /**
+     * @param key property key
+     * @param value unmodifiable list
+     */
+    default void visitList(String key, List<String> value) { }
+
+    /**
+     * @param key property key
+     * @param value unmodifiable map
+     */
+    default void visitMap(String key, Map<String, String> value) { }
+}
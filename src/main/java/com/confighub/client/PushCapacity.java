@@ -0,0 +1,150 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2016, ConfigHub, LLC (support@configHub.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+
+package com.confighub.client;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bound on the number of values queued for push, including values of a push in progress.  Room for
+ * a new value is reserved before it enters the queue, so a producer waiting for room never holds up
+ * a flush.  Room is given back when the value is pushed, discarded, or replaced by a newer value for
+ * the same key and context.
+ */
+final class PushCapacity
+{
+    final int capacity;
+    final PushQueue.OverflowPolicy policy;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Object lock = new Object();
+    private final LongAdder dropped = new LongAdder();
+
+    // Notified whenever room is given back
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    PushCapacity(final int capacity, final PushQueue.OverflowPolicy policy, final int queued)
+    {
+        this.capacity = capacity;
+        this.policy = policy;
+        this.queued.set(queued);
+    }
+
+    /*
+     * Reserve room for one value, if there is any.
+     */
+    boolean tryReserve()
+    {
+        while (true)
+        {
+            int q = this.queued.get();
+            if (q >= this.capacity)
+                return false;
+
+            if (this.queued.compareAndSet(q, q + 1))
+                return true;
+        }
+    }
+
+    /*
+     * Wait for room, and reserve it.
+     */
+    void reserve()
+            throws InterruptedException
+    {
+        if (tryReserve())
+            return;
+
+        this.waiting.incrementAndGet();
+        try
+        {
+            synchronized (this.lock)
+            {
+                while (!tryReserve())
+                    this.lock.wait();
+            }
+        }
+        finally
+        {
+            this.waiting.decrementAndGet();
+        }
+    }
+
+    /*
+     * Account for values queued regardless of capacity: replayed from the journal, or queued before
+     * capacity was set.
+     */
+    void force(final int values)
+    {
+        this.queued.addAndGet(values);
+    }
+
+    void release(final int values)
+    {
+        if (values <= 0)
+            return;
+
+        this.queued.addAndGet(-values);
+        if (this.waiting.get() > 0)
+        {
+            synchronized (this.lock)
+            {
+                this.lock.notifyAll();
+            }
+        }
+
+        for (Runnable listener : this.listeners)
+            listener.run();
+    }
+
+    int available()
+    {
+        return Math.max(0, this.capacity - this.queued.get());
+    }
+
+    void dropped()
+    {
+        this.dropped.increment();
+    }
+
+    long droppedCount()
+    {
+        return this.dropped.sum();
+    }
+
+    void addListener(final Runnable listener)
+    {
+        this.listeners.add(listener);
+    }
+
+    void removeListener(final Runnable listener)
+    {
+        this.listeners.remove(listener);
+    }
+}
@@ -0,0 +1,677 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2016, ConfigHub, LLC (support@configHub.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+
+package com.confighub.client;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of changes queued for push.
+ * <p>
+ * Every change is appended as a record tagged with the generation of the batch it was queued in.
+ * When a batch is done (pushed, or its failed changes journaled again under a later generation), an
+ * acknowledgement record moves the watermark to its generation.  On open, records above the
+ * watermark are replayed, and the journal is compacted to just those.  After acknowledgements,
+ * journal is compacted once it doubles in size, by the committer thread.
+ * </p>
+ * Producers encode records into a buffer of a stripe chosen by thread id, and do no I/O.  A group
+ * commit every commit interval, and with every acknowledgement, writes the buffered records to the
+ * file and forces them to the disk; a crash loses at most the records of one interval.  Records of
+ * one thread keep their order; records of different threads appended within an interval may not.
+ * <pre>
+ * record:  length (int), crc32 of payload (int), payload
+ * payload: type (byte), generation (long), type specific fields
+ * </pre>
+ */
+final class PushJournal
+{
+    private static final byte VALUE = 1;
+    private static final byte ATTRIBUTE = 2;
+    private static final byte ACK = 3;
+    private static final byte REMOVE = 4;
+
+    private static final byte STRING = 0;
+    private static final byte MAP = 1;
+    private static final byte LIST = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte REMOVED = 4;
+
+    private static final long MIN_COMPACT_SIZE = 1 << 20;
+    private static final int MAX_RETAINED_BUFFER = 1 << 20;
+    private static final int STRIPES = stripes();
+
+    /**
+     * Change read from the journal.
+     */
+    static final class Record
+    {
+        final byte type;
+        final long generation;
+        final String key;
+        final String attribute;
+        final Object attributeValue;
+        final PushQueue.Key.Value value;
+
+        private Record(byte type, long generation, String key, String attribute, Object attributeValue,
+                       PushQueue.Key.Value value)
+        {
+            this.type = type;
+            this.generation = generation;
+            this.key = key;
+            this.attribute = attribute;
+            this.attributeValue = attributeValue;
+            this.value = value;
+        }
+
+        boolean isValue()
+        {
+            return VALUE == this.type;
+        }
+
+        boolean isRemove()
+        {
+            return REMOVE == this.type;
+        }
+    }
+
+    /*
+     * Records buffered by producers of a stripe.  Producers append to the active buffer under the
+     * stripe's lock; group commit swaps it with the drained one, and writes it out without the lock.
+     */
+    private static final class Stripe
+    {
+        private final CRC32 crc32 = new CRC32();
+        private RecordBuffer active = new RecordBuffer();
+        private RecordBuffer draining = new RecordBuffer();
+    }
+
+    /*
+     * Growable buffer of encoded records, reused between group commits.
+     */
+    private static final class RecordBuffer
+            extends ByteArrayOutputStream
+    {
+        private final DataOutputStream out = new DataOutputStream(this);
+
+        RecordBuffer()
+        {
+            super(4096);
+        }
+
+        /*
+         * Append a record framed by its length and the crc32 of its payload, computed in place.
+         */
+        void append(final Record record, final CRC32 crc32)
+                throws IOException
+        {
+            int start = this.count;
+            this.out.writeLong(0);
+            writePayload(this.out, record);
+
+            int length = this.count - start - 8;
+            crc32.reset();
+            crc32.update(this.buf, start + 8, length);
+            putInt(start, length);
+            putInt(start + 4, (int)crc32.getValue());
+        }
+
+        private void putInt(final int offset, final int value)
+        {
+            this.buf[offset] = (byte)(value >>> 24);
+            this.buf[offset + 1] = (byte)(value >>> 16);
+            this.buf[offset + 2] = (byte)(value >>> 8);
+            this.buf[offset + 3] = (byte)value;
+        }
+
+        ByteBuffer contents()
+        {
+            return ByteBuffer.wrap(this.buf, 0, this.count);
+        }
+
+        boolean isOversized()
+        {
+            return this.buf.length > MAX_RETAINED_BUFFER;
+        }
+    }
+
+    private final File file;
+    private final ScheduledExecutorService committer;
+    private final List<Record> pending;
+    private final long generation;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private FileChannel channel;
+    private boolean dirty;
+    private long compactedSize;
+    private long watermark;
+    private boolean compacting;
+    private boolean failed;
+
+    private PushJournal(final File file, final long commitInterval, final List<Record> pending, final long generation)
+            throws IOException
+    {
+        this.file = file;
+        this.pending = pending;
+        this.generation = generation;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.compactedSize = this.channel.size();
+        for (int i = 0; i < STRIPES; i++)
+            this.stripes[i] = new Stripe();
+
+        this.committer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ConfigHub-journal");
+            t.setDaemon(true);
+            return t;
+        });
+        this.committer.scheduleWithFixedDelay(this::commit, commitInterval, commitInterval, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Open a journal, creating it if it does not exist.  Unacknowledged records are rewritten under
+     * a new generation, above any used before.
+     *
+     * @param file of the journal
+     * @param commitInterval between forces to the disk, in nanoseconds
+     * @param minGeneration lowest generation to rewrite records under
+     * @return journal, with unacknowledged records available from {@link #pending()}
+     * @throws IOException if journal cannot be read or written
+     */
+    static PushJournal open(final File file, final long commitInterval, final long minGeneration)
+            throws IOException
+    {
+        List<Record> records = file.exists() ? read(file) : new ArrayList<>();
+
+        long watermark = 0;
+        long maxGeneration = 0;
+        for (Record record : records)
+        {
+            maxGeneration = Math.max(maxGeneration, record.generation);
+            if (ACK == record.type)
+                watermark = Math.max(watermark, record.generation);
+        }
+
+        long generation = Math.max(maxGeneration + 1, minGeneration);
+        List<Record> pending = new ArrayList<>();
+        for (Record record : records)
+        {
+            if (ACK != record.type && record.generation > watermark)
+                pending.add(new Record(record.type, generation, record.key, record.attribute,
+                                       record.attributeValue, record.value));
+        }
+
+        rewrite(file, pending);
+        return new PushJournal(file, Math.max(TimeUnit.MILLISECONDS.toNanos(1), commitInterval), pending, generation);
+    }
+
+    /**
+     * @return unacknowledged records found when the journal was opened, in the order they were made
+     */
+    List<Record> pending()
+    {
+        return this.pending;
+    }
+
+    /**
+     * @return generation of the replayed records; new batches have to use higher generations
+     */
+    long generation()
+    {
+        return this.generation;
+    }
+
+    private static int stripes()
+    {
+        int n = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1) << 1;
+        return Math.min(64, n);
+    }
+
+    void value(final long generation, final String key, final PushQueue.Key.Value value)
+    {
+        append(new Record(VALUE, generation, key, null, null, value));
+    }
+
+    void attribute(final long generation, final String key, final String name, final Object value)
+    {
+        append(new Record(ATTRIBUTE, generation, key, name, value, null));
+    }
+
+    void remove(final long generation, final String key, final String context)
+    {
+        append(new Record(REMOVE, generation, key, context, null, null));
+    }
+
+    /*
+     * All changes up to the generation are pushed, or journaled again under a later one.  Compaction,
+     * when due, runs on the committer thread.
+     */
+    synchronized void ack(final long generation)
+    {
+        append(new Record(ACK, generation, null, null, null, null));
+        commit();
+
+        this.watermark = Math.max(this.watermark, generation);
+        if (this.compacting || !this.channel.isOpen())
+            return;
+
+        try
+        {
+            long size = this.channel.size();
+            if (size > MIN_COMPACT_SIZE && size > 2 * this.compactedSize)
+            {
+                this.compacting = true;
+                this.committer.execute(this::compact);
+            }
+        }
+        catch (IOException e)
+        {
+            ConfigHub.log.log(Level.WARNING, "Cannot compact push journal " + this.file, e);
+        }
+    }
+
+    /*
+     * Group commit: write records buffered since the last commit, and force them to the disk.
+     */
+    synchronized void commit()
+    {
+        if (!this.channel.isOpen())
+            return;
+
+        try
+        {
+            for (Stripe stripe : this.stripes)
+            {
+                RecordBuffer buffer;
+                synchronized (stripe)
+                {
+                    if (0 == stripe.active.size())
+                        continue;
+
+                    buffer = stripe.active;
+                    stripe.active = stripe.draining;
+                }
+
+                try
+                {
+                    ByteBuffer records = buffer.contents();
+                    while (records.hasRemaining())
+                        this.channel.write(records);
+                    this.dirty = true;
+                }
+                finally
+                {
+                    // A burst leaves a large buffer behind; producers get a new one next time
+                    buffer.reset();
+                    synchronized (stripe)
+                    {
+                        stripe.draining = buffer.isOversized() ? new RecordBuffer() : buffer;
+                    }
+                }
+            }
+
+            if (this.dirty)
+            {
+                this.channel.force(false);
+                this.dirty = false;
+            }
+        }
+        catch (IOException e)
+        {
+            failed(e);
+        }
+    }
+
+    synchronized void close()
+    {
+        this.committer.shutdown();
+        commit();
+
+        try
+        {
+            this.channel.close();
+        }
+        catch (IOException e)
+        {
+            ConfigHub.log.log(Level.WARNING, "Cannot close push journal " + this.file, e);
+        }
+    }
+
+    private void append(final Record record)
+    {
+        Stripe stripe = this.stripes[(int)Thread.currentThread().getId() & (STRIPES - 1)];
+        synchronized (stripe)
+        {
+            try
+            {
+                stripe.active.append(record, stripe.crc32);
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private void failed(final IOException e)
+    {
+        // Queue keeps working without durability; report the first failure only
+        if (!this.failed)
+            ConfigHub.log.log(Level.SEVERE, "Cannot write push journal " + this.file, e);
+        this.failed = true;
+    }
+
+    /*
+     * Rewrite journal with records above the watermark.  Holds the journal lock, so no group commit
+     * writes meanwhile; producers keep buffering records, which are written after it.
+     */
+    private synchronized void compact()
+    {
+        this.compacting = false;
+        if (!this.channel.isOpen())
+            return;
+
+        try
+        {
+            List<Record> live = new ArrayList<>();
+            for (Record record : read(this.file))
+            {
+                if (ACK != record.type && record.generation > this.watermark)
+                    live.add(record);
+            }
+
+            this.channel.close();
+            rewrite(this.file, live);
+            this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            this.compactedSize = this.channel.size();
+        }
+        catch (IOException e)
+        {
+            ConfigHub.log.log(Level.WARNING, "Cannot compact push journal " + this.file, e);
+        }
+    }
+
+    private static void rewrite(final File file, final List<Record> records)
+            throws IOException
+    {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (null != parent)
+            parent.mkdirs();
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            for (Record record : records)
+            {
+                ByteBuffer buffer = encode(record);
+                while (buffer.hasRemaining())
+                    out.write(buffer);
+            }
+            out.force(true);
+        }
+
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /*
+     * Read records up to the end of the journal, or up to a torn or corrupted record left by a crash.
+     */
+    private static List<Record> read(final File file)
+            throws IOException
+    {
+        List<Record> records = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel))))
+        {
+            while (true)
+            {
+                int length;
+                int crc;
+                byte[] payload;
+                try
+                {
+                    length = in.readInt();
+                    crc = in.readInt();
+                    if (length <= 0 || length > channel.size())
+                        break;
+
+                    payload = new byte[length];
+                    in.readFully(payload);
+                }
+                catch (EOFException e)
+                {
+                    break;
+                }
+
+                CRC32 crc32 = new CRC32();
+                crc32.update(payload, 0, length);
+                if ((int)crc32.getValue() != crc)
+                {
+                    ConfigHub.log.warning("Push journal " + file + " is truncated at a corrupted record");
+                    break;
+                }
+
+                records.add(decode(new DataInputStream(new ByteArrayInputStream(payload))));
+            }
+        }
+
+        return records;
+    }
+
+    private static ByteBuffer encode(final Record record)
+    {
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            writePayload(new DataOutputStream(bytes), record);
+
+            byte[] payload = bytes.toByteArray();
+            CRC32 crc32 = new CRC32();
+            crc32.update(payload, 0, payload.length);
+
+            ByteBuffer buffer = ByteBuffer.allocate(8 + payload.length);
+            buffer.putInt(payload.length).putInt((int)crc32.getValue()).put(payload);
+            buffer.flip();
+            return buffer;
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writePayload(final DataOutputStream out, final Record record)
+        throws IOException
+    {
+        out.writeByte(record.type);
+        out.writeLong(record.generation);
+
+        if (VALUE == record.type)
+        {
+            PushQueue.Key.Value value = record.value;
+            writeString(out, record.key);
+            out.writeBoolean(null != value.context);
+            if (null != value.context)
+                writeString(out, value.context);
+            out.writeBoolean(value.active);
+            writeObject(out, value.value);
+        }
+        else if (ATTRIBUTE == record.type)
+        {
+            writeString(out, record.key);
+            writeString(out, record.attribute);
+            writeObject(out, record.attributeValue);
+        }
+        else if (REMOVE == record.type)
+        {
+            writeString(out, record.key);
+            out.writeBoolean(null != record.attribute);
+            if (null != record.attribute)
+                writeString(out, record.attribute);
+        }
+    }
+
+    private static Record decode(final DataInputStream in)
+            throws IOException
+    {
+        byte type = in.readByte();
+        long generation = in.readLong();
+
+        if (VALUE == type)
+        {
+            String key = readString(in);
+            String context = in.readBoolean() ? readString(in) : null;
+            boolean active = in.readBoolean();
+            return new Record(type, generation, key, null, null,
+                              new PushQueue.Key.Value(readObject(in), context, active));
+        }
+
+        if (ATTRIBUTE == type)
+        {
+            String key = readString(in);
+            String name = readString(in);
+            return new Record(type, generation, key, name, readObject(in), null);
+        }
+
+        if (REMOVE == type)
+        {
+            String key = readString(in);
+            String context = in.readBoolean() ? readString(in) : null;
+            return new Record(type, generation, key, context, null, null);
+        }
+
+        return new Record(type, generation, null, null, null, null);
+    }
+
+    /*
+     * Values are pushed as strings, so scalars are journaled as strings.  Maps and lists hold strings.
+     */
+    private static void writeObject(final DataOutputStream out, final Object value)
+            throws IOException
+    {
+        if (null == value)
+            out.writeByte(REMOVED);
+        else if (value instanceof Boolean)
+        {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean)value);
+        }
+        else if (value instanceof Map)
+        {
+            out.writeByte(MAP);
+            out.writeInt(((Map<?, ?>)value).size());
+            for (Map.Entry<?, ?> e : ((Map<?, ?>)value).entrySet())
+            {
+                writeString(out, (String)e.getKey());
+                writeString(out, (String)e.getValue());
+            }
+        }
+        else if (value instanceof List)
+        {
+            out.writeByte(LIST);
+            out.writeInt(((List<?>)value).size());
+            for (Object o : (List<?>)value)
+                writeString(out, (String)o);
+        }
+        else
+        {
+            out.writeByte(STRING);
+            writeString(out, value.toString());
+        }
+    }
+
+    private static Object readObject(final DataInputStream in)
+            throws IOException
+    {
+        byte kind = in.readByte();
+        switch (kind)
+        {
+            case REMOVED:
+                return null;
+
+            case BOOLEAN:
+                return in.readBoolean();
+
+            case MAP:
+            {
+                int size = in.readInt();
+                Map<String, String> map = new LinkedHashMap<>(size * 2);
+                for (int i = 0; i < size; i++)
+                    map.put(readString(in), readString(in));
+                return map;
+            }
+
+            case LIST:
+            {
+                int size = in.readInt();
+                List<String> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++)
+                    list.add(readString(in));
+                return list;
+            }
+
+            default:
+                return readString(in);
+        }
+    }
+
+    private static void writeString(final DataOutputStream out, final String s)
+            throws IOException
+    {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInputStream in)
+            throws IOException
+    {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
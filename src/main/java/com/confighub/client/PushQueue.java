@@ -22,22 +22,46 @@
  *  THE SOFTWARE.
  */
 
+
 package com.confighub.client;
 
 import com.confighub.client.error.ConfigHubException;
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
-import java.io.DataOutputStream;
-import java.net.HttpURLConnection;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Manages queuing and pushing data to the ConfigHub service.
  * <br>
+ * Queue is safe for use by many threads.  Producers never lock: changes are added to the current batch,
+ * and a flush atomically swaps the batch out, so producers do not wait for the network.
  *
  * <pre>
  * {@code
@@ -56,11 +80,83 @@ import java.util.Map;
  */
 public class PushQueue
 {
-    private Map<String, Key> keys = new HashMap<>();
     private final ConfigHub configHub;
-    private boolean enableKeyCreation = false;
-    private String changeComment = null;
-    private static Gson gson = new Gson();
+    private volatile boolean enableKeyCreation = false;
+    private volatile boolean readYourWrites = false;
+    private volatile String changeComment = null;
+
+    // Changes queued since the last flush.  Swapped by flush, which is serialized by flushLock.
+    private volatile Batch batch = new Batch(1);
+    private final Object flushLock = new Object();
+    private volatile PushJournal journal;
+    private final LongAdder skipped = new LongAdder();
+
+    // Bound on queued values, and limit of push request rate; null if not set
+    private volatile PushCapacity capacity;
+    private volatile RateLimiter rateLimiter;
+
+    /**
+     * What happens to a change when the queue is full.
+     */
+    public enum OverflowPolicy
+    {
+        /**
+         * Wait until a flush makes room.
+         */
+        BLOCK,
+
+        /**
+         * Discard the oldest queued value to make room.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Discard the change, even if it replaces a queued value.
+         */
+        DROP_NEWEST,
+
+        /**
+         * Accept changes which replace a queued value for the same key and context, and discard others.
+         */
+        COALESCE_ONLY
+    }
+
+    /**
+     * Value change published to a {@link PushSubscriber}.
+     */
+    public static final class Update
+    {
+        final String key;
+        final Object value;
+        final String context;
+        final boolean active;
+
+        public Update(final String key, final Object value, final String context)
+        {
+            this(key, value, context, true);
+        }
+
+        public Update(final String key, final Object value, final String context, final boolean active)
+        {
+            this.key = key;
+            this.value = value;
+            this.context = context;
+            this.active = active;
+        }
+    }
+
+    // Chunking of large flushes; 0 keys per chunk sends each flush as a single request
+    private volatile int maxKeysPerChunk = 0;
+    private volatile int parallelism = 1;
+
+    private final Object autoFlushLock = new Object();
+
+    // Counters by key and context, and the scheduler rolling them up
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Object rollupLock = new Object();
+    private ScheduledExecutorService rollups;
+    private volatile AutoFlush autoFlush;
+    private volatile boolean pushFailed;
 
     protected PushQueue(final ConfigHub configHub)
     {
@@ -69,12 +165,13 @@ public class PushQueue
 
     /**
      * Key object representing all updates that are to be made on this key, its attributes and values.
+     * Changes are added to the queue as they are made; the Key object itself holds no state, and can be
+     * kept and reused across flushes.
      */
     public static class Key
     {
+        private final PushQueue queue;
         private final String name;
-        private final Map<String, Value> values = new HashMap<>();
-        private Map<String, Object> keyAttributes = new HashMap<>();
 
         /**
          * Data
@@ -83,8 +180,9 @@ public class PushQueue
             Text, Code, Boolean, Integer, Long, Double, Float, Map, List
         }
 
-        private Key(String name)
+        private Key(PushQueue queue, String name)
         {
+            this.queue = queue;
             this.name = name;
         }
 
@@ -111,7 +209,8 @@ public class PushQueue
          */
         public Key setValue(final Object value, final String context, boolean active)
         {
-            values.put(context, new Value(value, context, active));
+            Value.validate(value);
+            queue.put(this.name, new Value(value, context, active));
             return this;
         }
 
@@ -124,8 +223,7 @@ public class PushQueue
          */
         public Key setReadme(final String readme)
         {
-            this.keyAttributes.put("readme", readme);
-            return this;
+            return attribute("readme", readme);
         }
 
         /**
@@ -136,8 +234,7 @@ public class PushQueue
          */
         public Key enablePush()
         {
-            this.keyAttributes.put("push", true);
-            return this;
+            return attribute("push", true);
         }
 
         /**
@@ -148,8 +245,7 @@ public class PushQueue
          */
         public Key disablePush()
         {
-            this.keyAttributes.put("push", false);
-            return this;
+            return attribute("push", false);
         }
 
         /**
@@ -164,8 +260,7 @@ public class PushQueue
          */
         public Key setValueDataType(ValueDataType vdt)
         {
-            this.keyAttributes.put("vdt", vdt.name());
-            return this;
+            return attribute("vdt", vdt.name());
         }
 
         /**
@@ -175,8 +270,7 @@ public class PushQueue
          */
         public Key deprecate()
         {
-            this.keyAttributes.put("deprecated", true);
-            return this;
+            return attribute("deprecated", true);
         }
 
         /**
@@ -186,8 +280,7 @@ public class PushQueue
          */
         public Key notDeprecated()
         {
-            this.keyAttributes.put("deprecated", false);
-            return this;
+            return attribute("deprecated", false);
         }
 
         /**
@@ -203,25 +296,17 @@ public class PushQueue
          */
         public Key setSecurityGroup(final String securityGroupName, final String password)
         {
-            this.keyAttributes.put("securityGroup", securityGroupName);
-            this.keyAttributes.put("password", password);
-            return this;
+            attribute("securityGroup", securityGroupName);
+            return attribute("password", password);
         }
 
-        private JsonObject toJson()
+        /*
+         * Set key attribute.  Attributes are pushed with the next batch, and do not trigger a push.
+         */
+        private Key attribute(final String name, final Object value)
         {
-            JsonObject json = new JsonObject();
-            json.addProperty("key", this.name);
-            this.keyAttributes.forEach((k, v) -> json.addProperty(k, v.toString()));
-
-            if (this.values.size() > 0)
-            {
-                JsonArray values = new JsonArray();
-                this.values.forEach((context, value) -> values.add(value.toJson()));
-                json.add("values", values);
-            }
-
-            return json;
+            queue.putAttribute(this.name, name, value);
+            return this;
         }
 
         static class Value
@@ -243,184 +328,1354 @@ public class PushQueue
                 this.active = active;
             }
 
-            JsonObject toJson()
+            /*
+             * Estimated size of the value in the push request.
+             */
+            int size()
+            {
+                int size = 40 + (null == this.context ? 4 : this.context.length());
+                if (this.value instanceof Map)
+                {
+                    for (Map.Entry<?, ?> e : ((Map<?, ?>)this.value).entrySet())
+                        size += String.valueOf(e.getKey()).length() + String.valueOf(e.getValue()).length() + 6;
+                }
+                else if (this.value instanceof List)
+                {
+                    for (Object o : (List<?>)this.value)
+                        size += String.valueOf(o).length() + 3;
+                }
+                else
+                    size += String.valueOf(this.value).length();
+
+                return size;
+            }
+
+            void write(final JsonWriter json)
+                    throws IOException
             {
-                JsonObject json = new JsonObject();
-                json.addProperty("context", this.context);
-                json.addProperty("active", this.active);
+                json.beginObject();
+                json.name("context").value(this.context);
+                json.name("active").value(this.active);
+                json.name("value");
 
                 if (value instanceof Map)
                 {
-                    try
-                    {
-                        JsonObject map = new JsonObject();
-                        Map<String, String> o = (Map) value;
-                        o.forEach((k,v) -> map.addProperty(k,v));
-                        json.add("value", map);
-                    }
-                    catch (Exception e)
-                    {
-                        throw new ConfigHubException("Invalid map value specified.  Map<String, String> is accepted as map value");
-                    }
+                    json.beginObject();
+                    for (Map.Entry<?, ?> e : ((Map<?, ?>)value).entrySet())
+                        json.name((String)e.getKey()).value((String)e.getValue());
+                    json.endObject();
                 }
                 else if (value instanceof List)
                 {
-                    try
-                    {
-                        JsonArray list = new JsonArray();
-                        List<String> o = (List) value;
-                        o.forEach(v -> list.add(v));
-                        json.add("value", list);
-                    }
-                    catch (Exception e)
-                    {
-                        throw new ConfigHubException("Invalid list value specified.  List<String> is accepted as list value");
-                    }
+                    json.beginArray();
+                    for (Object o : (List<?>)value)
+                        json.value((String)o);
+                    json.endArray();
                 }
                 else
-                    json.addProperty("value", this.value.toString());
+                    json.value(this.value.toString());
+
+                json.endObject();
+            }
+
+            /*
+             * Map and List values are pushed as strings.  Checked when value is set, so an invalid
+             * value never reaches a push.
+             */
+            static void validate(final Object value)
+            {
+                if (null == value)
+                    throw new ConfigHubException("Value cannot be null.");
 
-                return json;
+                if (value instanceof Map)
+                {
+                    for (Map.Entry<?, ?> e : ((Map<?, ?>)value).entrySet())
+                        if (!(e.getKey() instanceof String) || !(e.getValue() instanceof String))
+                            throw new ConfigHubException("Invalid map value specified.  Map<String, String> is accepted as map value");
+                }
+                else if (value instanceof List)
+                {
+                    for (Object o : (List<?>)value)
+                        if (!(o instanceof String))
+                            throw new ConfigHubException("Invalid list value specified.  List<String> is accepted as list value");
+                }
             }
         }
     }
 
-    /**
-     * Get or create a property key.
-     *
-     * @param name property key
-     * @return Key object
+    /*
+     * Changes queued for one key: values by context, and key attributes.
      */
-    public Key key(final String name)
+    static final class Entry
     {
-        Key key = keys.get(name);
-        if (null == key)
+        final ConcurrentHashMap<String, Key.Value> values = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<String, Object> attributes = new ConcurrentHashMap<>();
+
+        // Map key for a value context; null context is queued under an empty one
+        static String contextKey(final String context)
         {
-            key = new Key(name);
-            keys.put(name, key);
+            return null == context ? "" : context;
         }
 
-        return key;
+        boolean isEmpty()
+        {
+            return this.values.isEmpty() && this.attributes.isEmpty();
+        }
+
+        void write(final JsonWriter json, final String name)
+                throws IOException
+        {
+            json.beginObject();
+            json.name("key").value(name);
+            for (Map.Entry<String, Object> attribute : this.attributes.entrySet())
+                json.name(attribute.getKey()).value(attribute.getValue().toString());
+
+            if (!this.values.isEmpty())
+            {
+                json.name("values").beginArray();
+                for (Key.Value value : this.values.values())
+                    value.write(json);
+                json.endArray();
+            }
+
+            json.endObject();
+        }
     }
 
-    /**
-     * Enable new key creation.  If specified key does not already exist, a new one will be created.
+    /*
+     * Batch of changes.  Producers register as writers on a stripe chosen by thread id, and write only
+     * while the batch is not sealed.  Flush swaps in a new batch, seals the old one, and waits for the
+     * writers already inside to leave, after which the old batch is no longer modified.
      */
-    public void enableKeyCreation()
+    static final class Batch
     {
-        this.enableKeyCreation = true;
+        private static final int STRIPES = stripes();
+        private static final int STRIDE = 16; // ints per cache line, so stripes do not share lines
+
+        private final AtomicIntegerArray writers = new AtomicIntegerArray(STRIPES * STRIDE);
+        private volatile boolean sealed;
+
+        final long generation;
+        final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+        final AtomicInteger values = new AtomicInteger();
+        final AtomicLong bytes = new AtomicLong();
+
+        // Auto-flush triggers which already fired for this batch
+        final AtomicBoolean latencyScheduled = new AtomicBoolean();
+        final AtomicBoolean fullScheduled = new AtomicBoolean();
+
+        // Values of this batch returned to the queue after a failed push
+        final AtomicInteger requeued = new AtomicInteger();
+
+        // Keys and contexts in the order values were queued; kept for DROP_OLDEST only
+        final ConcurrentLinkedQueue<String[]> order = new ConcurrentLinkedQueue<>();
+
+        Batch(final long generation)
+        {
+            this.generation = generation;
+        }
+
+        private static int stripes()
+        {
+            int n = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1) << 1;
+            return Math.min(64, n);
+        }
+
+        private static int stripe()
+        {
+            return ((int)Thread.currentThread().getId() & (STRIPES - 1)) * STRIDE;
+        }
+
+        /*
+         * Register as a writer.  Returns false if batch is sealed, and a new batch should be used.
+         */
+        boolean enter()
+        {
+            int stripe = stripe();
+            this.writers.incrementAndGet(stripe);
+            if (!this.sealed)
+                return true;
+
+            this.writers.decrementAndGet(stripe);
+            return false;
+        }
+
+        void exit()
+        {
+            this.writers.decrementAndGet(stripe());
+        }
+
+        /*
+         * Stop accepting writes, and wait for writers inside the batch to leave.
+         */
+        void seal()
+        {
+            this.sealed = true;
+            for (int i = 0; i < STRIPES * STRIDE; i += STRIDE)
+            {
+                while (0 != this.writers.get(i))
+                    Thread.yield();
+            }
+        }
+
+        Entry entry(final String key)
+        {
+            Entry entry = this.entries.get(key);
+            return null == entry ? this.entries.computeIfAbsent(key, k -> new Entry()) : entry;
+        }
+
+        boolean isEmpty()
+        {
+            return this.entries.isEmpty();
+        }
     }
 
-    /**
-     * Disable new key creation.  If a key is not already defined, new key will be rejected.
+    /*
+     * Enter the current batch as a writer.  Caller has to exit the returned batch.
      */
-    public void disableKeyCreation()
+    private Batch enter()
     {
-        this.enableKeyCreation = false;
+        while (true)
+        {
+            Batch batch = this.batch;
+            if (batch.enter())
+                return batch;
+        }
     }
 
-    /**
-     * Add change comment that will be visible when looking at revisions.
-     *
-     * @param changeComment revision comment
-     */
-    public void setChangeComment(String changeComment)
+    private void put(final String key, final Key.Value value)
     {
-        this.changeComment = changeComment;
+        put(key, value, this.journal, true);
     }
 
-    private JsonObject buildJson()
+    /*
+     * Queue a value, and record it in the journal if there is one.  Journal record is appended while
+     * inside the batch, so it is tagged with the generation the value is pushed with.
+     *
+     * Room for the value is reserved before entering the batch, as a producer waiting for room must
+     * not hold up the flush which makes it.  Unbounded puts (replay, for example) take no room, but
+     * are accounted for.
+     */
+    private void put(final String key, final Key.Value value, final PushJournal journal, final boolean bounded)
     {
-        JsonObject json = new JsonObject();
+        PushCapacity capacity = this.capacity;
+        boolean reserved = null == capacity || !bounded || capacity.tryReserve();
+        if (!reserved && OverflowPolicy.BLOCK == capacity.policy)
+        {
+            try
+            {
+                capacity.reserve();
+                reserved = true;
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new ConfigHubException("Interrupted while waiting for room in the push queue.");
+            }
+        }
 
-        JsonArray data = new JsonArray();
-        keys.forEach((name, key) -> data.add(key.toJson()));
+        String context = Entry.contextKey(value.context);
+        Key.Value previous = null;
+        boolean accepted = true;
 
-        if (null != this.changeComment)
-            json.addProperty("changeComment", this.changeComment);
+        Batch batch = enter();
+        try
+        {
+            if (reserved)
+                previous = batch.entry(key).values.put(context, value);
+            else if (OverflowPolicy.DROP_OLDEST == capacity.policy)
+            {
+                Entry entry = batch.entry(key);
+                previous = entry.values.put(context, value);
+                if (null == previous && !evictOldest(batch, journal, key, context))
+                {
+                    // Nothing in this batch to evict
+                    entry.values.remove(context, value);
+                    accepted = false;
+                }
+            }
+            else if (OverflowPolicy.COALESCE_ONLY == capacity.policy)
+            {
+                Entry entry = batch.entries.get(key);
+                previous = null == entry ? null : entry.values.replace(context, value);
+                accepted = null != previous;
+            }
+            else
+                accepted = false;
 
-        if (this.enableKeyCreation)
-            json.addProperty("enableKeyCreation", true);
+            if (accepted)
+            {
+                if (null != journal)
+                    journal.value(batch.generation, key, value);
+
+                if (null == previous)
+                {
+                    batch.values.incrementAndGet();
+                    if (null != capacity && OverflowPolicy.DROP_OLDEST == capacity.policy)
+                        batch.order.add(new String[] { key, context });
+                }
+                batch.bytes.addAndGet(value.size() - (null == previous ? 0 : previous.size()));
+            }
+        }
+        finally
+        {
+            batch.exit();
+        }
+
+        if (null != capacity)
+        {
+            if (!accepted)
+            {
+                capacity.dropped();
+                return;
+            }
 
-        json.add("data", data);
+            if (!bounded && null == previous)
+                capacity.force(1);
+            else if (bounded && reserved && null != previous)
+                capacity.release(1);
+        }
 
-        return json;
+        queued(batch);
     }
 
-    /**
-     * Clears all changes added to the pushQueue.
+    /*
+     * Remove the oldest value queued in the batch, other than the one just queued.  Caller is inside
+     * the batch.
      */
-    public void clear()
+    private boolean evictOldest(final Batch batch, final PushJournal journal, final String key, final String context)
     {
-        this.keys.clear();
+        String[] oldest;
+        while (null != (oldest = batch.order.poll()))
+        {
+            // Value for the same key and context was removed earlier, and queued again just now
+            if (oldest[0].equals(key) && oldest[1].equals(context))
+                continue;
+
+            Entry entry = batch.entries.get(oldest[0]);
+            Key.Value evicted = null == entry ? null : entry.values.remove(oldest[1]);
+            if (null != evicted)
+            {
+                if (null != journal)
+                    journal.remove(batch.generation, oldest[0], evicted.context);
+
+                batch.values.decrementAndGet();
+                batch.bytes.addAndGet(-evicted.size());
+                return true;
+            }
+        }
+
+        return false;
     }
 
-    /**
-     * Pushes all added changes to the ConfigHub service and clears the queue.
-     *
-     * @return PushResponse containing response status and message (if any).
-     * @throws ConfigHubException containing error details
+    /*
+     * Remove a queued value; used to replay evictions from the journal.
      */
-    public synchronized PushResponse flush()
-            throws ConfigHubException
+    private void remove(final String key, final String context)
     {
-        PushResponse r = new PushResponse();
+        PushCapacity capacity = this.capacity;
+        Key.Value removed = null;
 
+        Batch batch = enter();
         try
         {
-            JsonObject json = buildJson();
-            String jsonString = gson.toJson(json);
-
-            HttpURLConnection connection = configHub.getHttpsConnection("/rest/push");
-            connection.setRequestProperty("Application-Name", configHub.applicationName);
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setRequestProperty("Client-Version", configHub.clientApiVersion);
-            connection.setRequestProperty("Content-Length", Integer.toString(jsonString.getBytes().length));
+            Entry entry = batch.entries.get(key);
+            if (null != entry)
+                removed = entry.values.remove(Entry.contextKey(context));
 
-            connection.setRequestMethod( "POST" );
+            if (null != removed)
+            {
+                batch.values.decrementAndGet();
+                batch.bytes.addAndGet(-removed.size());
+            }
+        }
+        finally
+        {
+            batch.exit();
+        }
 
-            connection.setUseCaches (false);
-            connection.setDoInput(true);
-            connection.setDoOutput(true);
+        if (null != removed && null != capacity)
+            capacity.release(1);
+    }
 
-            //Send request
-            DataOutputStream wr = new DataOutputStream(connection.getOutputStream());
-            wr.writeBytes (jsonString);
-            wr.flush();
-            wr.close();
+    private void putAttribute(final String key, final String name, final Object value)
+    {
+        putAttribute(key, name, value, this.journal);
+    }
 
-            r.responseCode = connection.getResponseCode();
-            r.message = connection.getHeaderField("ETag");
+    private void putAttribute(final String key, final String name, final Object value, final PushJournal journal)
+    {
+        Batch batch = enter();
+        try
+        {
+            if (null != journal)
+                journal.attribute(batch.generation, key, name, value);
 
-            clear();
+            Map<String, Object> attributes = batch.entry(key).attributes;
+            if (null == value)
+                attributes.remove(name);
+            else if (null == attributes.put(name, value))
+                batch.bytes.addAndGet(name.length() + value.toString().length() + 6);
         }
-        catch (Exception e)
+        finally
         {
-            e.printStackTrace();
-
-            r.responseCode = 0;
-            r.message = e.getMessage();
+            batch.exit();
         }
 
-        return r;
+        queued(batch);
     }
 
-    /**
-     * Contains status and message received from the pushQueue.flush response.
+    /*
+     * Return changes of a batch which failed to push into the queue.  Changes made since the batch
+     * was swapped out are newer, and are kept.
      */
-    public static class PushResponse
+    private void requeue(final Batch from, final Map<String, Entry> failed)
     {
-        int responseCode;
-        String message;
+        PushJournal journal = this.journal;
+        Batch batch = enter();
+        try
+        {
+            failed.forEach((key, failedEntry) -> {
+                Entry entry = batch.entry(key);
+                failedEntry.values.forEach((context, value) -> {
+                    if (null == entry.values.putIfAbsent(context, value))
+                    {
+                        if (null != journal)
+                            journal.value(batch.generation, key, value);
 
-        public int getResponseCode()
+                        from.requeued.incrementAndGet();
+                        batch.values.incrementAndGet();
+                        batch.bytes.addAndGet(value.size());
+                    }
+                });
+                failedEntry.attributes.forEach((name, value) -> {
+                    if (null == entry.attributes.putIfAbsent(name, value) && null != journal)
+                        journal.attribute(batch.generation, key, name, value);
+                });
+            });
+        }
+        finally
         {
-            return responseCode;
+            batch.exit();
         }
+    }
 
-        public String getMessage()
+    /*
+     * Swap out the current batch.  Caller holds flushLock.
+     */
+    private Batch swap()
+    {
+        return swap(this.batch.generation + 1);
+    }
+
+    private Batch swap(final long generation)
+    {
+        Batch batch = this.batch;
+        this.batch = new Batch(generation);
+        batch.seal();
+        return batch;
+    }
+
+    /*
+     * Batch is done: its changes are pushed, discarded, or journaled again with the current batch.
+     */
+    private void done(final Batch batch)
+    {
+        PushJournal journal = this.journal;
+        if (null != journal)
+            journal.ack(batch.generation);
+
+        released(batch);
+    }
+
+    /*
+     * Give back room taken by values of the batch, except for those returned to the queue.
+     */
+    private void released(final Batch batch)
+    {
+        PushCapacity capacity = this.capacity;
+        if (null != capacity)
+            capacity.release(batch.values.get() - batch.requeued.get());
+    }
+
+    /**
+     * Record queued changes in a journal file, so they are not lost if the process exits before they
+     * are pushed.  Changes found in the journal which were not pushed before are queued again.
+     * <br>
+     * Changes are buffered in memory as they are queued, and written and forced to the disk in groups,
+     * once per commit interval and with every flush; a crash loses at most one interval of changes.
+     * After a flush, journal is compacted in the background once its size doubles.
+     *
+     * @param file journal file
+     * @param commitInterval maximum time before a queued change is written and forced to the disk
+     * @param unit of the commit interval
+     * @throws IOException if journal cannot be read or created
+     */
+    public void setJournal(String file, long commitInterval, TimeUnit unit)
+            throws IOException
+    {
+        synchronized (this.flushLock)
         {
-            return message;
+            closeJournal();
+
+            PushJournal journal = PushJournal.open(new File(file), unit.toNanos(commitInterval),
+                                                   this.batch.generation + 1);
+
+            // Replayed records are already in the journal under the new batch's generation
+            Batch unjournaled = swap(journal.generation());
+            for (PushJournal.Record record : journal.pending())
+            {
+                if (record.isValue())
+                    put(record.key, record.value, null, false);
+                else if (record.isRemove())
+                    remove(record.key, record.attribute);
+                else
+                    putAttribute(record.key, record.attribute, record.attributeValue, null);
+            }
+
+            this.journal = journal;
+
+            // Changes queued before the journal was set are journaled with the new batch
+            requeue(unjournaled, unjournaled.entries);
+            released(unjournaled);
+            journal.commit();
+
+            if (!journal.pending().isEmpty())
+                ConfigHub.log.info("Replayed " + journal.pending().size() + " unpushed changes from " + file);
+        }
+
+        queued(this.batch);
+    }
+
+    /**
+     * Record queued changes in a journal file, written and forced to the disk every 10 milliseconds.
+     *
+     * @param file journal file
+     * @throws IOException if journal cannot be read or created
+     * @see #setJournal(String, long, TimeUnit)
+     */
+    public void setJournal(String file)
+            throws IOException
+    {
+        setJournal(file, 10, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop recording queued changes.  Journal file keeps the changes not yet pushed.
+     */
+    public void closeJournal()
+    {
+        synchronized (this.flushLock)
+        {
+            PushJournal journal = this.journal;
+            if (null == journal)
+                return;
+
+            this.journal = null;
+
+            // Wait for producers still appending to the journal
+            Batch batch = swap();
+            requeue(batch, batch.entries);
+            released(batch);
+            journal.close();
+        }
+    }
+
+    /**
+     * Get or create a property key.
+     *
+     * @param name property key
+     * @return Key object
+     */
+    public Key key(final String name)
+    {
+        return new Key(this, name);
+    }
+
+    /**
+     * Counter summing updates to a key, in a context.
+     *
+     * @param name property key
+     * @param context value context
+     * @return Counter, the same one for every call with the same key and context
+     */
+    public Counter counter(final String name, final String context)
+    {
+        return counter(name, context, Counter.Rollup.SUM);
+    }
+
+    /**
+     * Counter for a value of a key, updated many times, and pushed once per roll-up interval.
+     *
+     * @param name property key
+     * @param context value context
+     * @param rollup of updates in an interval
+     * @return Counter, the same one for every call with the same key and context
+     * @throws ConfigHubException if the counter exists with a different rollup
+     */
+    public Counter counter(final String name, final String context, final Counter.Rollup rollup)
+    {
+        Counter counter = this.counters.computeIfAbsent(name + '\n' + Entry.contextKey(context),
+                                                        k -> new Counter(name, context, rollup));
+        if (counter.rollup != rollup)
+            throw new ConfigHubException("Counter '" + name + "' already exists with " + counter.rollup + " rollup.");
+
+        return counter;
+    }
+
+    /**
+     * Roll up counters every interval, and push the values.  Counters not updated during an interval
+     * are not pushed.
+     *
+     * @param interval between roll-ups
+     * @param unit of interval
+     */
+    public void enableCounterRollups(long interval, TimeUnit unit)
+    {
+        synchronized (this.rollupLock)
+        {
+            if (null != this.rollups)
+                this.rollups.shutdown();
+
+            this.rollups = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ConfigHub-counters");
+                t.setDaemon(true);
+                return t;
+            });
+
+            long nanos = unit.toNanos(Math.max(1, interval));
+            this.rollups.scheduleAtFixedRate(this::pushRollups, nanos, nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Stop rolling up counters.  Updates since the last roll-up are queued by {@link #rollUpCounters()}.
+     */
+    public void disableCounterRollups()
+    {
+        synchronized (this.rollupLock)
+        {
+            if (null != this.rollups)
+                this.rollups.shutdown();
+
+            this.rollups = null;
+        }
+    }
+
+    /**
+     * Queue values of counters updated since the last roll-up.  Values are queued even if the queue
+     * is full, as there is at most one per counter.
+     */
+    public void rollUpCounters()
+    {
+        synchronized (this.rollupLock)
+        {
+            for (Counter counter : this.counters.values())
+            {
+                Long value = counter.rollUp();
+                if (null != value)
+                    put(counter.name, new Key.Value(value, counter.context), this.journal, false);
+            }
+        }
+    }
+
+    private void pushRollups()
+    {
+        rollUpCounters();
+        if (this.batch.isEmpty())
+            return;
+
+        PushResponse response = flush();
+        if (0 == response.responseCode)
+            ConfigHub.log.warning("Push of counters failed, values stay queued: " + response.message);
+        else if (response.responseCode >= 300)
+            ConfigHub.log.warning("Push of counters rejected with status " + response.responseCode);
+    }
+
+    /**
+     * Push queued changes automatically.  Changes to the same key and context are coalesced, and
+     * pushed in the background by a single flusher thread, when the number of queued values reaches
+     * <code>maxBatchSize</code>, their estimated size reaches <code>maxBatchBytes</code>, or the oldest
+     * queued change has waited for <code>maxLatency</code>.  Changes still queued when JVM shuts down
+     * are pushed by a shutdown hook.
+     *
+     * @param maxBatchSize number of queued values which triggers a push
+     * @param maxBatchBytes estimated request size in bytes which triggers a push
+     * @param maxLatency maximum time a change waits in the queue
+     * @param unit of maxLatency
+     */
+    public void enableAutoFlush(int maxBatchSize, long maxBatchBytes, long maxLatency, TimeUnit unit)
+    {
+        synchronized (this.autoFlushLock)
+        {
+            AutoFlush previous = this.autoFlush;
+            this.autoFlush = new AutoFlush(previous,
+                                           Math.max(1, maxBatchSize),
+                                           Math.max(1, maxBatchBytes),
+                                           unit.toNanos(Math.max(0, maxLatency)));
+
+            if (null == previous)
+                Runtime.getRuntime().addShutdownHook(this.autoFlush.shutdownHook);
+        }
+
+        queued(this.batch);
+    }
+
+    /**
+     * Stop pushing changes automatically.  Changes already queued stay in the queue until the next
+     * {@link #flush()}.
+     */
+    public void disableAutoFlush()
+    {
+        synchronized (this.autoFlushLock)
+        {
+            AutoFlush autoFlush = this.autoFlush;
+            if (null == autoFlush)
+                return;
+
+            this.autoFlush = null;
+            autoFlush.flusher.shutdown();
+
+            try
+            {
+                Runtime.getRuntime().removeShutdownHook(autoFlush.shutdownHook);
+            }
+            catch (IllegalStateException ignore)
+            {
+                // JVM is already shutting down, and the hook will flush
+            }
+        }
+    }
+
+    private final class AutoFlush
+    {
+        final ScheduledExecutorService flusher;
+        final Thread shutdownHook;
+        final int maxBatchSize;
+        final long maxBatchBytes;
+        final long maxLatency;
+
+        /*
+         * Thresholds changed on an enabled auto-flush keep its flusher thread and shutdown hook.
+         */
+        AutoFlush(final AutoFlush previous, final int maxBatchSize, final long maxBatchBytes, final long maxLatency)
+        {
+            if (null == previous)
+            {
+                this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "ConfigHub-push");
+                    t.setDaemon(true);
+                    return t;
+                });
+                this.shutdownHook = new Thread(PushQueue.this::flushOnShutdown, "ConfigHub-push-shutdown");
+            }
+            else
+            {
+                this.flusher = previous.flusher;
+                this.shutdownHook = previous.shutdownHook;
+            }
+
+            this.maxBatchSize = maxBatchSize;
+            this.maxBatchBytes = maxBatchBytes;
+            this.maxLatency = maxLatency;
+        }
+    }
+
+    /*
+     * Schedule a push of the batch when a threshold is reached.  Each trigger fires once per batch.
+     */
+    private void queued(final Batch batch)
+    {
+        AutoFlush autoFlush = this.autoFlush;
+        if (null == autoFlush || batch.isEmpty())
+            return;
+
+        // After a failed push, changes wait for the latency period even if batch is full
+        boolean full = !this.pushFailed &&
+                       (batch.values.get() >= autoFlush.maxBatchSize || batch.bytes.get() >= autoFlush.maxBatchBytes);
+
+        if (full && batch.fullScheduled.compareAndSet(false, true))
+            schedule(autoFlush, 0);
+        else if (batch.latencyScheduled.compareAndSet(false, true))
+            schedule(autoFlush, autoFlush.maxLatency);
+    }
+
+    private void schedule(final AutoFlush autoFlush, final long delay)
+    {
+        try
+        {
+            autoFlush.flusher.schedule(this::autoFlush, delay, TimeUnit.NANOSECONDS);
+        }
+        catch (RuntimeException e)
+        {
+            // Auto-flush was disabled concurrently
+        }
+    }
+
+    private void autoFlush()
+    {
+        if (null == this.autoFlush || this.batch.isEmpty())
+            return;
+
+        PushResponse response = flush();
+        if (0 == response.responseCode)
+            ConfigHub.log.warning("Automatic push failed, changes stay queued: " + response.message);
+        else if (response.responseCode >= 300)
+            ConfigHub.log.warning("Automatic push rejected with status " + response.responseCode);
+
+        queued(this.batch);
+    }
+
+    private void flushOnShutdown()
+    {
+        if (!this.batch.isEmpty())
+            flush();
+    }
+
+    /**
+     * Enable new key creation.  If specified key does not already exist, a new one will be created.
+     */
+    public void enableKeyCreation()
+    {
+        this.enableKeyCreation = true;
+    }
+
+    /**
+     * Disable new key creation.  If a key is not already defined, new key will be rejected.
+     */
+    public void disableKeyCreation()
+    {
+        this.enableKeyCreation = false;
+    }
+
+    /**
+     * Apply pushed values to the local configuration once the server accepts them, so they can be
+     * read back without a pull.  Only active values set for the context of this ConfigHub object are
+     * applied; a push to any other context may or may not change what this client resolves.
+     */
+    public void enableReadYourWrites()
+    {
+        this.readYourWrites = true;
+    }
+
+    /**
+     * Local configuration changes only with a pull.
+     */
+    public void disableReadYourWrites()
+    {
+        this.readYourWrites = false;
+    }
+
+    /**
+     * Add change comment that will be visible when looking at revisions.
+     *
+     * @param changeComment revision comment
+     */
+    public void setChangeComment(String changeComment)
+    {
+        this.changeComment = changeComment;
+    }
+
+    /*
+     * Stream push request for a chunk of the batch.  Written directly to the connection, so memory used does
+     * not depend on the size of the batch.
+     */
+    private void write(final Map<String, Entry> entries, final OutputStream out)
+            throws IOException
+    {
+        OutputStream sent = configHub.transferStats.countSent(out);
+        GZIPOutputStream gzip = configHub.pushCompression ? new GZIPOutputStream(sent, 8192) : null;
+
+        Writer writer = new OutputStreamWriter(configHub.transferStats.countSentEncoded(null == gzip ? sent : gzip),
+                                               StandardCharsets.UTF_8);
+        JsonWriter json = new JsonWriter(new BufferedWriter(writer, 8192));
+        json.setSerializeNulls(false);
+
+        json.beginObject();
+        if (null != this.changeComment)
+            json.name("changeComment").value(this.changeComment);
+
+        if (this.enableKeyCreation)
+            json.name("enableKeyCreation").value(true);
+
+        json.name("data").beginArray();
+        for (Map.Entry<String, Entry> entry : entries.entrySet())
+            entry.getValue().write(json, entry.getKey());
+        json.endArray();
+        json.endObject();
+
+        // Stream is owned by the transport; finish compression without closing it
+        json.flush();
+        if (null != gzip)
+            gzip.finish();
+    }
+
+    /**
+     * Clears all changes added to the pushQueue.
+     */
+    public void clear()
+    {
+        synchronized (this.flushLock)
+        {
+            done(swap());
+        }
+    }
+
+    /**
+     * Bound the number of values in the queue, including values of a push in progress.  Changes which
+     * replace a queued value for the same key and context take no additional room.  Discarded changes
+     * are counted by {@link #getDroppedCount()}.
+     * <br>
+     * With {@link OverflowPolicy#BLOCK}, producers wait for a flush, so the queue has to be flushed
+     * by another thread, or automatically.
+     *
+     * @param maxValues maximum number of queued values.  Zero removes the bound.
+     * @param policy applied to changes when the queue is full
+     */
+    public void setCapacity(int maxValues, OverflowPolicy policy)
+    {
+        synchronized (this.flushLock)
+        {
+            PushCapacity previous = this.capacity;
+            this.capacity = maxValues <= 0 ? null : new PushCapacity(maxValues, policy, this.batch.values.get());
+
+            // Producers waiting for room in the previous bound go ahead
+            if (null != previous)
+                previous.release(previous.capacity);
+        }
+    }
+
+    /**
+     * @return number of changes discarded because the queue was full, since capacity was set
+     */
+    public long getDroppedCount()
+    {
+        PushCapacity capacity = this.capacity;
+        return null == capacity ? 0 : capacity.droppedCount();
+    }
+
+    /**
+     * Limit the rate of push requests.  Each request, including each chunk of a chunked flush and each
+     * retry of a failed attempt, waits for a token from a bucket which holds up to <code>burst</code> tokens, and is refilled at
+     * <code>requestsPerSecond</code>.
+     *
+     * @param requestsPerSecond sustained request rate.  Zero or less removes the limit.
+     * @param burst number of requests which can be made at once after a quiet period
+     */
+    public void setRateLimit(double requestsPerSecond, int burst)
+    {
+        this.rateLimiter = requestsPerSecond <= 0 ? null : new RateLimiter(requestsPerSecond, burst);
+    }
+
+    /**
+     * Subscriber which queues changes published by a reactive producer.  Demand is signaled only
+     * while the queue has room, so the producer is held back instead of filling the queue.
+     *
+     * @return new subscriber to this queue
+     */
+    public PushSubscriber subscriber()
+    {
+        return new PushSubscriber(this);
+    }
+
+    PushCapacity capacity()
+    {
+        return this.capacity;
+    }
+
+    /**
+     * Split large flushes into chunks, pushed concurrently.  Keys are partitioned into chunks by their
+     * hash, so each key is in exactly one chunk of a flush; as flushes do not overlap, changes of a key
+     * are applied in the order they were made.  If a chunk fails without a response from the server,
+     * only its changes are returned to the queue.
+     * <br>
+     * Each chunk is a separate push, so the change comment is recorded with every chunk's revision.
+     *
+     * @param maxKeysPerChunk maximum number of keys in a chunk.  Zero pushes each flush as a single
+     *                        request.  Default: 0.
+     * @param parallelism maximum number of chunks pushed at the same time.  Additional chunks are
+     *                    pushed on the executor set with {@link ConfigHub#setExecutor(Executor)}.
+     */
+    public void setChunking(int maxKeysPerChunk, int parallelism)
+    {
+        this.maxKeysPerChunk = Math.max(0, maxKeysPerChunk);
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /*
+     * Drop values which the latest pulled configuration already holds.  A value is unchanged if it is
+     * active, its key has no attribute changes, and pulled value for the key has the same context and
+     * value.  Pulled value's context is known only if configuration was pulled with value contexts;
+     * otherwise the value may be resolved from a wider context, and pushing it to a specific context
+     * creates an override, so it is always pushed.  Encrypted values are always pushed.
+     */
+    private void skipUnchanged(final Batch batch)
+    {
+        Snapshot snapshot = configHub.getSnapshot();
+        if (snapshot.data.isEmpty())
+            return;
+
+        for (Iterator<Map.Entry<String, Entry>> it = batch.entries.entrySet().iterator(); it.hasNext(); )
+        {
+            Map.Entry<String, Entry> e = it.next();
+            Entry entry = e.getValue();
+            if (!entry.attributes.isEmpty())
+                continue;
+
+            Properties.Value pulled = snapshot.data.get(e.getKey());
+            if (null == pulled || null == pulled.context || null != pulled.encryptionGroup)
+                continue;
+
+            entry.values.values().removeIf(value -> {
+                boolean unchanged = value.active &&
+                                    pulled.context.equals(value.context) &&
+                                    pulled.sameAs(value.value);
+                if (unchanged)
+                    this.skipped.increment();
+                return unchanged;
+            });
+
+            if (entry.values.isEmpty())
+                it.remove();
+        }
+    }
+
+    /*
+     * Apply values of a push accepted by the server to the local configuration.  Value type is the
+     * pushed value data type, or type of the pulled value, or inferred from the pushed object.
+     */
+    private void applyLocally(final Map<String, Entry> entries)
+    {
+        String context = configHub.context;
+        if (!this.readYourWrites || null == context)
+            return;
+
+        Snapshot snapshot = configHub.getSnapshot();
+        Map<String, Properties.Value> changes = new HashMap<>();
+        entries.forEach((key, entry) -> {
+            Key.Value value = entry.values.get(context);
+            if (null == value || !value.active)
+                return;
+
+            Properties.Value pulled = snapshot.data.get(key);
+            if (null != pulled && null != pulled.encryptionGroup)
+                return;
+
+            Object vdt = entry.attributes.get("vdt");
+            Object deprecated = entry.attributes.get("deprecated");
+            String type = null != vdt ? vdt.toString() : null != pulled ? pulled.type() : type(value.value);
+
+            try
+            {
+                Properties.Value v = Properties.value(type,
+                                                      value.value instanceof Map || value.value instanceof List ?
+                                                              value.value : value.value.toString(),
+                                                      null != deprecated ? (Boolean)deprecated :
+                                                              null != pulled && pulled.deprecated,
+                                                      null,
+                                                      null != pulled && null != pulled.context ? context : null);
+                if (null != v)
+                    changes.put(key, v);
+            }
+            catch (RuntimeException e)
+            {
+                ConfigHub.log.fine("Pushed value of '" + key + "' is not applied locally: " + e);
+            }
+        });
+
+        if (!changes.isEmpty())
+            configHub.patch(changes);
+    }
+
+    private static String type(final Object value)
+    {
+        if (value instanceof Boolean) return "Boolean";
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) return "Integer";
+        if (value instanceof Long) return "Long";
+        if (value instanceof Double) return "Double";
+        if (value instanceof Float) return "Float";
+        if (value instanceof Map) return "Map";
+        if (value instanceof List) return "List";
+        return "Text";
+    }
+
+    /**
+     * @return number of queued values which were not pushed, because pulled configuration already
+     * held them
+     */
+    public long getSkippedCount()
+    {
+        return this.skipped.sum();
+    }
+
+    /*
+     * Partition batch entries into chunks by key hash.  Hash partitions larger than the chunk limit
+     * are split further.
+     */
+    private List<Map<String, Entry>> chunks(final Batch batch)
+    {
+        int maxKeys = this.maxKeysPerChunk;
+        int size = batch.entries.size();
+        if (0 == maxKeys || size <= maxKeys)
+            return Collections.singletonList(batch.entries);
+
+        int partitions = (size + maxKeys - 1) / maxKeys;
+        List<Map<String, Entry>> hashed = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++)
+            hashed.add(new HashMap<>());
+
+        batch.entries.forEach((key, entry) -> {
+            int h = key.hashCode();
+            hashed.get(((h ^ (h >>> 16)) & 0x7fffffff) % partitions).put(key, entry);
+        });
+
+        List<Map<String, Entry>> chunks = new ArrayList<>();
+        for (Map<String, Entry> partition : hashed)
+        {
+            Map<String, Entry> chunk = new HashMap<>();
+            for (Map.Entry<String, Entry> e : partition.entrySet())
+            {
+                if (chunk.size() == maxKeys)
+                {
+                    chunks.add(chunk);
+                    chunk = new HashMap<>();
+                }
+                chunk.put(e.getKey(), e.getValue());
+            }
+
+            if (!chunk.isEmpty())
+                chunks.add(chunk);
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Pushes all added changes to the ConfigHub service and clears the queue.  Changes added while
+     * the push is in progress stay queued for the next push.  If push fails without a response from
+     * the server, pushed changes are returned to the queue, unless they were changed in the meantime.
+     *
+     * @return PushResponse containing response status and message (if any).
+     * @throws ConfigHubException containing error details
+     */
+    public PushResponse flush()
+            throws ConfigHubException
+    {
+        synchronized (this.flushLock)
+        {
+            Batch batch = swap();
+            batch.entries.values().removeIf(Entry::isEmpty);
+            skipUnchanged(batch);
+
+            PushResponse r;
+            List<Map<String, Entry>> chunks = chunks(batch);
+            if (batch.isEmpty())
+            {
+                // Nothing changed; no request is made
+                r = new PushResponse();
+                r.responseCode = 200;
+            }
+            else if (1 == chunks.size())
+            {
+                r = send(batch, chunks.get(0));
+                sent(batch, chunks.get(0), r);
+            }
+            else
+                r = PushResponse.aggregate(sendChunks(batch, chunks));
+
+            this.pushFailed = 0 == r.responseCode;
+            done(batch);
+            return r;
+        }
+    }
+
+    /*
+     * Push chunks with bounded parallelism.  Calling thread pushes chunks too, so all chunks are pushed
+     * even if the executor does not run the helpers.
+     */
+    private List<PushResponse> sendChunks(final Batch batch, final List<Map<String, Entry>> chunks)
+    {
+        PushResponse[] responses = new PushResponse[chunks.size()];
+        AtomicInteger next = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(chunks.size());
+
+        Runnable worker = () -> {
+            int i;
+            while ((i = next.getAndIncrement()) < chunks.size())
+            {
+                try
+                {
+                    responses[i] = send(batch, chunks.get(i));
+                    sent(batch, chunks.get(i), responses[i]);
+                }
+                finally
+                {
+                    done.countDown();
+                }
+            }
+        };
+
+        Executor executor = configHub.executor();
+        int helpers = Math.min(this.parallelism, chunks.size()) - 1;
+        for (int h = 0; h < helpers; h++)
+        {
+            try
+            {
+                executor.execute(worker);
+            }
+            catch (RuntimeException e)
+            {
+                break;
+            }
+        }
+
+        worker.run();
+
+        boolean interrupted = false;
+        while (true)
+        {
+            try
+            {
+                done.await();
+                break;
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        return Arrays.asList(responses);
+    }
+
+    /*
+     * Requeue changes if push failed without a response, or apply them locally if they were accepted.
+     */
+    private void sent(final Batch batch, final Map<String, Entry> entries, final PushResponse r)
+    {
+        if (0 == r.responseCode)
+            requeue(batch, entries);
+        else if (r.responseCode >= 200 && r.responseCode < 300)
+            applyLocally(entries);
+    }
+
+    private PushResponse send(final Batch batch, final Map<String, Entry> entries)
+    {
+        PushResponse r = new PushResponse();
+        r.keys = entries.size();
+
+        try
+        {
+            Transport.Request request = configHub.request("POST", "/rest/push")
+                    .header("Application-Name", configHub.applicationName)
+                    .header("Content-Type", "application/json")
+                    .header("Client-Version", ConfigHub.clientApiVersion)
+                    .header("Content-Encoding", configHub.pushCompression ? "gzip" : null)
+                    .body(out -> write(entries, out), -1);
+
+            try (Transport.Response response = configHub.send(request, true, this.rateLimiter))
+            {
+                r.responseCode = response.getStatus();
+                r.message = response.getHeader("ETag");
+            }
+        }
+        catch (CircuitBreaker.OpenException e)
+        {
+            r.responseCode = 0;
+            r.message = e.getMessage();
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+
+            r.responseCode = 0;
+            r.message = e.getMessage();
+        }
+
+        return r;
+    }
+
+    /**
+     * Push all added changes without blocking the calling thread.  Push runs on the executor set
+     * with {@link ConfigHub#setExecutor(Executor)}, or on the default executor.
+     *
+     * @return future of the PushResponse
+     */
+    public CompletableFuture<PushResponse> flushAsync()
+    {
+        return flushAsync(configHub.executor());
+    }
+
+    /**
+     * Push all added changes without blocking the calling thread.
+     *
+     * @param executor on which to run the push
+     * @return future of the PushResponse
+     */
+    public CompletableFuture<PushResponse> flushAsync(Executor executor)
+    {
+        return CompletableFuture.supplyAsync(this::flush, executor);
+    }
+
+    /**
+     * Contains status and message received from the pushQueue.flush response.
+     */
+    public static class PushResponse
+    {
+        int responseCode;
+        String message;
+        int keys;
+        List<PushResponse> chunks = Collections.emptyList();
+
+        /*
+         * Response of a chunked flush.  Response code is 0 if any chunk failed without a response, or
+         * the highest status code otherwise; message is that of the chunk which determined the code.
+         */
+        static PushResponse aggregate(final List<PushResponse> chunks)
+        {
+            PushResponse r = new PushResponse();
+            PushResponse worst = null;
+            for (PushResponse chunk : chunks)
+            {
+                r.keys += chunk.keys;
+                if (null == worst || 0 == chunk.responseCode ||
+                    (0 != worst.responseCode && chunk.responseCode > worst.responseCode))
+                    worst = chunk;
+            }
+
+            r.responseCode = worst.responseCode;
+            r.message = worst.message;
+            r.chunks = Collections.unmodifiableList(chunks);
+            return r;
+        }
+
+        public int getResponseCode()
+        {
+            return responseCode;
+        }
+
+        public String getMessage()
+        {
+            return message;
+        }
+
+        /**
+         * @return number of keys pushed
+         */
+        public int getKeys()
+        {
+            return keys;
+        }
+
+        /**
+         * @return responses of individual chunks, if the flush was split into chunks; empty otherwise
+         */
+        public List<PushResponse> getChunks()
+        {
+            return chunks;
         }
     }
 
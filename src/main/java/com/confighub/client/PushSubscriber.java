@@ -0,0 +1,265 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2016, ConfigHub, LLC (support@configHub.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+
+package com.confighub.client;
+
+import com.confighub.client.error.ConfigHubException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.logging.Level;
+
+/**
+ * Subscriber which queues published value changes for push.  It has the shape of
+ * <code>java.util.concurrent.Flow.Subscriber</code>, which is not available to Java 8 clients; on
+ * Java 9+, a Flow publisher is connected with {@link #asFlowSubscriber()}.
+ * <p>
+ * If the queue is bounded, demand is signaled only while the queue has room, and is topped up as
+ * flushes make more.  Otherwise, subscriber requests everything at once.  Bound is taken from the
+ * queue when subscribed.
+ * </p>
+ */
+public final class PushSubscriber
+{
+    /**
+     * Subscription to a publisher of value changes.
+     */
+    public interface Subscription
+    {
+        void request(long n);
+
+        void cancel();
+    }
+
+    private final PushQueue queue;
+    private final Runnable roomListener = this::requestMore;
+
+    private Subscription subscription;
+    private PushCapacity capacity;
+
+    // Requested, but not yet received
+    private long outstanding;
+
+    PushSubscriber(final PushQueue queue)
+    {
+        this.queue = queue;
+    }
+
+    public void onSubscribe(final Subscription subscription)
+    {
+        synchronized (this)
+        {
+            if (null != this.subscription)
+            {
+                subscription.cancel();
+                return;
+            }
+
+            this.subscription = subscription;
+            this.capacity = this.queue.capacity();
+        }
+
+        if (null == this.capacity)
+            subscription.request(Long.MAX_VALUE);
+        else
+        {
+            this.capacity.addListener(this.roomListener);
+            requestMore();
+        }
+    }
+
+    public void onNext(final PushQueue.Update update)
+    {
+        synchronized (this)
+        {
+            if (this.outstanding > 0)
+                this.outstanding--;
+        }
+
+        this.queue.key(update.key).setValue(update.value, update.context, update.active);
+        requestMore();
+    }
+
+    public void onError(final Throwable throwable)
+    {
+        ConfigHub.log.log(Level.WARNING, "Publisher of changes to push failed", throwable);
+        detach();
+    }
+
+    public void onComplete()
+    {
+        detach();
+    }
+
+    /**
+     * Cancel the subscription; changes published afterwards are not queued.
+     */
+    public void cancel()
+    {
+        Subscription subscription = detach();
+        if (null != subscription)
+            subscription.cancel();
+    }
+
+    private Subscription detach()
+    {
+        Subscription subscription;
+        synchronized (this)
+        {
+            subscription = this.subscription;
+            this.subscription = null;
+        }
+
+        if (null != this.capacity)
+            this.capacity.removeListener(this.roomListener);
+        return subscription;
+    }
+
+    /**
+     * Adapt this subscriber to <code>java.util.concurrent.Flow.Subscriber</code>, so that it can
+     * subscribe to a Flow publisher, such as <code>SubmissionPublisher</code>, of
+     * {@link PushQueue.Update}s.
+     * <pre>
+     * {@code
+     * publisher.subscribe((Flow.Subscriber<PushQueue.Update>)configHub.pushQueue.subscriber().asFlowSubscriber());
+     * }
+     * </pre>
+     *
+     * @return object implementing <code>java.util.concurrent.Flow.Subscriber</code>
+     * @throws ConfigHubException if Flow is not available on this JDK
+     */
+    public Object asFlowSubscriber()
+    {
+        Class<?> flowSubscriber;
+        Method request;
+        Method cancel;
+        try
+        {
+            // Flow exists on JDK 9+; this client is built for Java 8
+            flowSubscriber = Class.forName("java.util.concurrent.Flow$Subscriber");
+            Class<?> flowSubscription = Class.forName("java.util.concurrent.Flow$Subscription");
+            request = flowSubscription.getMethod("request", long.class);
+            cancel = flowSubscription.getMethod("cancel");
+        }
+        catch (ClassNotFoundException | NoSuchMethodException e)
+        {
+            throw new ConfigHubException("java.util.concurrent.Flow is not available on this JDK");
+        }
+
+        InvocationHandler handler = (proxy, method, args) -> {
+            switch (method.getName())
+            {
+                case "onSubscribe":
+                {
+                    final Object subscription = args[0];
+                    onSubscribe(new Subscription()
+                    {
+                        @Override
+                        public void request(final long n)
+                        {
+                            invoke(request, subscription, n);
+                        }
+
+                        @Override
+                        public void cancel()
+                        {
+                            invoke(cancel, subscription);
+                        }
+                    });
+                    return null;
+                }
+
+                case "onNext":
+                    onNext((PushQueue.Update)args[0]);
+                    return null;
+
+                case "onError":
+                    onError((Throwable)args[0]);
+                    return null;
+
+                case "onComplete":
+                    onComplete();
+                    return null;
+
+                case "equals":
+                    return proxy == args[0];
+
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+
+                case "toString":
+                    return "Flow.Subscriber of " + this;
+
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        };
+
+        return Proxy.newProxyInstance(PushSubscriber.class.getClassLoader(), new Class<?>[] { flowSubscriber }, handler);
+    }
+
+    private static void invoke(final Method method, final Object target, final Object... args)
+    {
+        try
+        {
+            method.invoke(target, args);
+        }
+        catch (InvocationTargetException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            throw new ConfigHubException("Flow subscription failed: " + e.getCause());
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new ConfigHubException("Flow subscription failed: " + e);
+        }
+    }
+
+    /*
+     * Request as many changes as there is room for, less those already requested.
+     */
+    private void requestMore()
+    {
+        Subscription subscription;
+        long n;
+        synchronized (this)
+        {
+            subscription = this.subscription;
+            if (null == subscription || null == this.capacity)
+                return;
+
+            n = this.capacity.available() - this.outstanding;
+            if (n <= 0)
+                return;
+
+            this.outstanding += n;
+        }
+
+        subscription.request(n);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2016, ConfigHub, LLC (support@configHub.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+
+package com.confighub.client;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retry policy for pull and push requests.  A request is retried if it failed with an I/O error, or if
+ * the server responded with one of the retry-on status codes, until the maximum number of attempts is
+ * reached.  Delay between attempts grows exponentially, and is randomized by jitter, so that clients
+ * do not retry in lockstep.
+ *
+ * <pre>
+ * {@code
+ * ConfigHub configHub = new ConfigHub("Account", "RepositoryName")
+ *          .setRetryPolicy(new RetryPolicy()
+ *                  .setMaxAttempts(4)
+ *                  .setBackoff(200, 10000, TimeUnit.MILLISECONDS)
+ *                  .setJitter(0.5));
+ * }
+ * </pre>
+ */
+public final class RetryPolicy
+{
+    private int maxAttempts = 3;
+    private long initialBackoff = TimeUnit.MILLISECONDS.toNanos(100);
+    private long maxBackoff = TimeUnit.SECONDS.toNanos(10);
+    private double multiplier = 2;
+    private double jitter = 0.5;
+    private Set<Integer> retryOn = new HashSet<>();
+
+    /**
+     * Policy with 3 attempts, backoff starting at 100ms and doubling up to 10s, jitter of 0.5,
+     * and retries on status codes 429, 502, 503 and 504.
+     */
+    public RetryPolicy()
+    {
+        setRetryOn(429, 502, 503, 504);
+    }
+
+    /**
+     * @return new policy which makes a single attempt
+     */
+    public static RetryPolicy none()
+    {
+        return new RetryPolicy().setMaxAttempts(1);
+    }
+
+    /**
+     * @param maxAttempts total number of attempts, including the first one
+     * @return RetryPolicy
+     */
+    public RetryPolicy setMaxAttempts(int maxAttempts)
+    {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        return this;
+    }
+
+    /**
+     * @param initialBackoff delay before the first retry
+     * @param maxBackoff maximum delay between attempts
+     * @param unit of the delays
+     * @return RetryPolicy
+     */
+    public RetryPolicy setBackoff(long initialBackoff, long maxBackoff, TimeUnit unit)
+    {
+        this.initialBackoff = unit.toNanos(Math.max(0, initialBackoff));
+        this.maxBackoff = Math.max(this.initialBackoff, unit.toNanos(maxBackoff));
+        return this;
+    }
+
+    /**
+     * @param multiplier by which the delay grows after each retry.  Default: 2.
+     * @return RetryPolicy
+     */
+    public RetryPolicy setMultiplier(double multiplier)
+    {
+        this.multiplier = Math.max(1, multiplier);
+        return this;
+    }
+
+    /**
+     * @param jitter fraction of the delay, from 0 to 1, by which it is randomly shortened.  With jitter
+     *               of 1, delay is anywhere between zero and the full backoff.  Default: 0.5.
+     * @return RetryPolicy
+     */
+    public RetryPolicy setJitter(double jitter)
+    {
+        this.jitter = Math.min(1, Math.max(0, jitter));
+        return this;
+    }
+
+    /**
+     * @param statusCodes HTTP status codes on which a request is retried
+     * @return RetryPolicy
+     */
+    public RetryPolicy setRetryOn(int... statusCodes)
+    {
+        Set<Integer> retryOn = new HashSet<>();
+        for (int statusCode : statusCodes)
+            retryOn.add(statusCode);
+
+        this.retryOn = retryOn;
+        return this;
+    }
+
+    /**
+     * @return total number of attempts, including the first one
+     */
+    public int getMaxAttempts()
+    {
+        return this.maxAttempts;
+    }
+
+    boolean retryOn(final int statusCode)
+    {
+        return retryOn.contains(statusCode);
+    }
+
+    /*
+     * Delay in nanoseconds before the given retry; first retry is 1.  Retry-After header in seconds,
+     * if sent by the server, is honored up to the maximum backoff.
+     */
+    long delay(final int retry, final String retryAfter)
+    {
+        if (null != retryAfter)
+        {
+            try
+            {
+                return Math.min(this.maxBackoff, TimeUnit.SECONDS.toNanos(Long.parseLong(retryAfter.trim())));
+            }
+            catch (NumberFormatException ignore)
+            {
+                // HTTP date form is not used by ConfigHub; fall back to backoff
+            }
+        }
+
+        double backoff = Math.min(this.maxBackoff, this.initialBackoff * Math.pow(this.multiplier, retry - 1));
+        return (long)(backoff * (1 - this.jitter * ThreadLocalRandom.current().nextDouble()));
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2016, ConfigHub, LLC (support@configHub.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package com.confighub.client;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Snapshot is an immutable, consistent version of the configuration received by a single pull, or read
+ * from a local file.  Each pull builds a new Snapshot and publishes it in place of the previous one, so
+ * <code>configHub.properties</code> and <code>configHub.files</code> always read the latest version.
+ * <br>
+ * To serve a whole request from one version, pin the snapshot and read from it:
+ *
+ * <pre>
+ * {@code
+ * Snapshot snapshot = configHub.getSnapshot();
+ *
+ * int dbPort = snapshot.properties.getInteger("db.port");
+ * String dbHost = snapshot.properties.get("db.host");
+ * String settings = snapshot.files.get("settings.conf");
+ * }
+ * </pre>
+ */
+public final class Snapshot
+{
+    static final Snapshot EMPTY = new Snapshot(null, null, null,
+                                               Collections.emptyMap(), Collections.emptyMap(),
+                                               null, null);
+
+    final String context;
+    final String account;
+    final String repositoryName;
+    final Map<String, Properties.Value> data;
+    final Map<String, String> fileContents;
+
+    // Validators sent by the server with this configuration
+    final String eTag;
+    final String lastModified;
+
+    // Digest of the document this configuration was read from; null if not read from one
+    final byte[] digest;
+
+    // Values of keys bound to property handles, indexed by handle slot
+    final Properties.Value[] slots;
+
+    // Index of keys; built with the snapshot, or on first use for a memory mapped snapshot
+    private volatile KeyIndex keyIndex;
+
+    /**
+     * Properties of this snapshot.
+     */
+    public final Properties properties;
+
+    /**
+     * Files of this snapshot.
+     */
+    public final Files files;
+
+    Snapshot(final String context,
+             final String account,
+             final String repositoryName,
+             final Map<String, Properties.Value> data,
+             final Map<String, String> fileContents,
+             final String eTag,
+             final String lastModified)
+    {
+        this(context, account, repositoryName, data, fileContents, eTag, lastModified, null);
+    }
+
+    Snapshot(final String context,
+             final String account,
+             final String repositoryName,
+             final Map<String, Properties.Value> data,
+             final Map<String, String> fileContents,
+             final String eTag,
+             final String lastModified,
+             final byte[] digest)
+    {
+        this.context = context;
+        this.account = account;
+        this.repositoryName = repositoryName;
+        this.data = Collections.unmodifiableMap(data);
+        this.fileContents = Collections.unmodifiableMap(fileContents);
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.digest = digest;
+        this.slots = new Properties.Value[0];
+        this.keyIndex = data instanceof BinarySnapshot.MappedMap ? null : new KeyIndex(data.keySet());
+
+        this.properties = new Properties(this);
+        this.files = new Files(this);
+    }
+
+    private Snapshot(final Snapshot source, final Properties.Value[] slots)
+    {
+        this.context = source.context;
+        this.account = source.account;
+        this.repositoryName = source.repositoryName;
+        this.data = source.data;
+        this.fileContents = source.fileContents;
+        this.eTag = source.eTag;
+        this.lastModified = source.lastModified;
+        this.digest = source.digest;
+        this.slots = slots;
+        this.keyIndex = source.keyIndex;
+
+        this.properties = new Properties(this);
+        this.files = new Files(this);
+    }
+
+    /*
+     * Copy of this configuration with values replaced or added.  Validators and digest are not kept,
+     * as the configuration no longer matches what the server sent.
+     */
+    Snapshot withValues(final Map<String, Properties.Value> values)
+    {
+        Map<String, Properties.Value> data = new HashMap<>(this.data);
+        data.putAll(values);
+
+        return new Snapshot(this.context, this.account, this.repositoryName, data, this.fileContents, null, null);
+    }
+
+    /*
+     * Same configuration, with values resolved for each of the slot keys.
+     */
+    Snapshot withSlots(final String[] slotKeys)
+    {
+        if (slotKeys.length == this.slots.length)
+            return this;
+
+        Properties.Value[] slots = new Properties.Value[slotKeys.length];
+        for (int i = 0; i < slotKeys.length; i++)
+            slots[i] = this.data.get(slotKeys[i]);
+
+        return new Snapshot(this, slots);
+    }
+
+    KeyIndex keyIndex()
+    {
+        KeyIndex index = this.keyIndex;
+        if (null == index)
+            this.keyIndex = index = new KeyIndex(this.data.keySet());
+        return index;
+    }
+
+    /*
+     * Value of a key bound to a slot.  If the slot was assigned after this snapshot was
+     * published, value is looked up by key.
+     */
+    Properties.Value value(final int slot, final String key)
+    {
+        Properties.Value[] slots = this.slots;
+        return slot >= 0 && slot < slots.length ? slots[slot] : this.data.get(key);
+    }
+
+    /**
+     * @return context of the configuration
+     */
+    public String getContext()
+    {
+        return context;
+    }
+
+    /**
+     * @return account owning the repository
+     */
+    public String getAccount()
+    {
+        return account;
+    }
+
+    /**
+     * @return name of the repository
+     */
+    public String getRepositoryName()
+    {
+        return repositoryName;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2016, ConfigHub, LLC (support@configHub.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+
+package com.confighub.client;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts bytes transferred by pulls and pushes, both as sent over the network and before compression,
+ * to show savings of compressed transport.
+ *
+ * <pre>
+ * {@code
+ * TransferStats stats = configHub.getTransferStats();
+ * long saved = stats.getBytesReceivedDecoded() - stats.getBytesReceived();
+ * }
+ * </pre>
+ */
+public final class TransferStats
+{
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder bytesReceivedDecoded = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesSentEncoded = new LongAdder();
+
+    TransferStats() { }
+
+    /**
+     * @return bytes of pull responses, as received over the network
+     */
+    public long getBytesReceived()
+    {
+        return bytesReceived.sum();
+    }
+
+    /**
+     * @return bytes of pull responses, after decompression
+     */
+    public long getBytesReceivedDecoded()
+    {
+        return bytesReceivedDecoded.sum();
+    }
+
+    /**
+     * @return bytes of push requests, as sent over the network
+     */
+    public long getBytesSent()
+    {
+        return bytesSent.sum();
+    }
+
+    /**
+     * @return bytes of push requests, before compression
+     */
+    public long getBytesSentEncoded()
+    {
+        return bytesSentEncoded.sum();
+    }
+
+    InputStream countReceived(final InputStream in)
+    {
+        return new CountingInputStream(in, bytesReceived);
+    }
+
+    InputStream countReceivedDecoded(final InputStream in)
+    {
+        return new CountingInputStream(in, bytesReceivedDecoded);
+    }
+
+    OutputStream countSent(final OutputStream out)
+    {
+        return new CountingOutputStream(out, bytesSent);
+    }
+
+    OutputStream countSentEncoded(final OutputStream out)
+    {
+        return new CountingOutputStream(out, bytesSentEncoded);
+    }
+
+    private static final class CountingInputStream
+            extends FilterInputStream
+    {
+        private final LongAdder counter;
+
+        CountingInputStream(final InputStream in, final LongAdder counter)
+        {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read()
+                throws IOException
+        {
+            int b = super.read();
+            if (b >= 0)
+                counter.increment();
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len)
+                throws IOException
+        {
+            int n = super.read(b, off, len);
+            if (n > 0)
+                counter.add(n);
+            return n;
+        }
+
+        @Override
+        public long skip(final long n)
+                throws IOException
+        {
+            long skipped = super.skip(n);
+            counter.add(skipped);
+            return skipped;
+        }
+    }
+
+    private static final class CountingOutputStream
+            extends FilterOutputStream
+    {
+        private final LongAdder counter;
+
+        CountingOutputStream(final OutputStream out, final LongAdder counter)
+        {
+            super(out);
+            this.counter = counter;
+        }
+
+        @Override
+        public void write(final int b)
+                throws IOException
+        {
+            out.write(b);
+            counter.increment();
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len)
+                throws IOException
+        {
+            out.write(b, off, len);
+            counter.add(len);
+        }
+    }
+}
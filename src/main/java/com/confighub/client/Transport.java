@@ -0,0 +1,211 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2016, ConfigHub, LLC (support@configHub.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+
+package com.confighub.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Transport sends pull and push requests to the ConfigHub server.  By default, ConfigHub uses a shared
+ * {@link UrlConnectionTransport}; a different implementation can be set with
+ * {@link ConfigHub#setTransport(Transport)}, for example {@link InMemoryTransport} in tests and
+ * benchmarks.
+ * <br>
+ * Implementations have to be thread safe.
+ */
+public interface Transport
+{
+    /**
+     * Send a request, and return its response once the status and headers are received.  Response
+     * body is read by the caller, which then closes the response.
+     *
+     * @param request to send
+     * @return response of the server
+     * @throws IOException if request cannot be sent, or response cannot be received
+     */
+    Response send(Request request)
+            throws IOException;
+
+    /**
+     * Writes request body to the transport's output stream.
+     */
+    interface Body
+    {
+        void writeTo(OutputStream out)
+                throws IOException;
+    }
+
+    /**
+     * HTTP request to the ConfigHub server.
+     */
+    final class Request
+    {
+        private final String method;
+        private final String url;
+        private final Map<String, String> headers = new LinkedHashMap<>();
+        private int connectTimeout;
+        private int readTimeout;
+        private Body body;
+        private long bodyLength = -1;
+
+        Request(final String method, final String url)
+        {
+            this.method = method;
+            this.url = url;
+        }
+
+        Request header(final String name, final String value)
+        {
+            if (null == value)
+                this.headers.remove(name);
+            else
+                this.headers.put(name, value);
+            return this;
+        }
+
+        Request timeouts(final int connectTimeout, final int readTimeout)
+        {
+            this.connectTimeout = connectTimeout;
+            this.readTimeout = readTimeout;
+            return this;
+        }
+
+        Request body(final Body body, final long bodyLength)
+        {
+            this.body = body;
+            this.bodyLength = bodyLength;
+            return this;
+        }
+
+        /**
+         * @return HTTP method
+         */
+        public String getMethod()
+        {
+            return method;
+        }
+
+        /**
+         * @return full URL of the request
+         */
+        public String getUrl()
+        {
+            return url;
+        }
+
+        /**
+         * @return request headers
+         */
+        public Map<String, String> getHeaders()
+        {
+            return Collections.unmodifiableMap(headers);
+        }
+
+        /**
+         * @param name of the header
+         * @return header value, or null if header is not set
+         */
+        public String getHeader(final String name)
+        {
+            return headers.get(name);
+        }
+
+        /**
+         * @return connect timeout in milliseconds; zero is infinite
+         */
+        public int getConnectTimeout()
+        {
+            return connectTimeout;
+        }
+
+        /**
+         * @return read timeout in milliseconds; zero is infinite
+         */
+        public int getReadTimeout()
+        {
+            return readTimeout;
+        }
+
+        /**
+         * @return true if the request has a body
+         */
+        public boolean hasBody()
+        {
+            return null != body;
+        }
+
+        /**
+         * @return length of the body in bytes, or -1 if it is not known before it is written
+         */
+        public long getBodyLength()
+        {
+            return bodyLength;
+        }
+
+        /**
+         * Write request body.
+         *
+         * @param out stream to write the body to
+         * @throws IOException if body cannot be written
+         */
+        public void writeBody(final OutputStream out)
+                throws IOException
+        {
+            if (null != body)
+                body.writeTo(out);
+        }
+    }
+
+    /**
+     * HTTP response of the ConfigHub server.  Closing the response releases its connection.
+     */
+    interface Response
+            extends Closeable
+    {
+        /**
+         * @return HTTP status code
+         */
+        int getStatus();
+
+        /**
+         * @param name of the header, case insensitive
+         * @return header value, or null if header is not present
+         */
+        String getHeader(String name);
+
+        /**
+         * @return response body
+         * @throws IOException if body cannot be read
+         */
+        InputStream getBody()
+                throws IOException;
+    }
+}
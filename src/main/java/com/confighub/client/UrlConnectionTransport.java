@@ -0,0 +1,174 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2016, ConfigHub, LLC (support@configHub.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+
+package com.confighub.client;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * Default transport, based on <code>HttpURLConnection</code>.
+ * <p>
+ * Connections are kept alive and reused by the JDK's connection cache: every response body, including
+ * error bodies, is fully read and closed when the response is closed, so its connection returns to the
+ * cache.  The number of idle connections kept per server is set by the <code>http.maxConnections</code>
+ * system property (JDK default is 5).  All HTTPS connections share one SSL socket factory, so TLS
+ * sessions are resumed instead of renegotiated.
+ * </p>
+ * <code>HttpURLConnection</code> speaks HTTP/1.1 only.  For HTTP/2 multiplexing, plug in a transport
+ * based on an HTTP/2 capable client.
+ */
+public class UrlConnectionTransport
+        implements Transport
+{
+    private static final int DRAIN_LIMIT = 64 * 1024;
+
+    private final SSLSocketFactory sslSocketFactory;
+
+    /**
+     * Transport using the JDK default SSL socket factory.
+     */
+    public UrlConnectionTransport()
+    {
+        this(HttpsURLConnection.getDefaultSSLSocketFactory());
+    }
+
+    /**
+     * @param sslSocketFactory shared by all HTTPS connections of this transport
+     */
+    public UrlConnectionTransport(final SSLSocketFactory sslSocketFactory)
+    {
+        this.sslSocketFactory = sslSocketFactory;
+    }
+
+    @Override
+    public Response send(final Request request)
+            throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection)new URL(request.getUrl()).openConnection();
+
+        if (connection instanceof HttpsURLConnection && null != this.sslSocketFactory)
+            ((HttpsURLConnection)connection).setSSLSocketFactory(this.sslSocketFactory);
+
+        connection.setRequestMethod(request.getMethod());
+        connection.setConnectTimeout(request.getConnectTimeout());
+        connection.setReadTimeout(request.getReadTimeout());
+        connection.setUseCaches(false);
+        connection.setDoInput(true);
+
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet())
+            connection.setRequestProperty(header.getKey(), header.getValue());
+
+        if (request.hasBody())
+        {
+            connection.setDoOutput(true);
+
+            if (request.getBodyLength() >= 0)
+                connection.setFixedLengthStreamingMode(request.getBodyLength());
+            else
+                connection.setChunkedStreamingMode(0);
+
+            try (OutputStream out = connection.getOutputStream())
+            {
+                request.writeBody(out);
+            }
+        }
+
+        int status = connection.getResponseCode();
+        return new UrlConnectionResponse(connection, status);
+    }
+
+    private static final class UrlConnectionResponse
+            implements Response
+    {
+        private final HttpURLConnection connection;
+        private final int status;
+        private InputStream body;
+
+        UrlConnectionResponse(final HttpURLConnection connection, final int status)
+        {
+            this.connection = connection;
+            this.status = status;
+        }
+
+        @Override
+        public int getStatus()
+        {
+            return status;
+        }
+
+        @Override
+        public String getHeader(final String name)
+        {
+            return connection.getHeaderField(name);
+        }
+
+        @Override
+        public InputStream getBody()
+                throws IOException
+        {
+            if (null == body)
+                body = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+
+            return body;
+        }
+
+        /*
+         * Drain what is left of the body, so the connection can be reused.  If more than DRAIN_LIMIT
+         * bytes remain, it is cheaper to drop the connection.
+         */
+        @Override
+        public void close()
+        {
+            try
+            {
+                InputStream in = getBody();
+                if (null == in)
+                    return;
+
+                byte[] buffer = new byte[4096];
+                long drained = 0;
+                int n;
+                while (drained < DRAIN_LIMIT && (n = in.read(buffer)) > 0)
+                    drained += n;
+
+                if (drained >= DRAIN_LIMIT)
+                    connection.disconnect();
+
+                in.close();
+            }
+            catch (IOException e)
+            {
+                connection.disconnect();
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.confighub.client;
+
+import com.confighub.client.error.ConfigHubException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests asynchronous pull and push, and waiting for the first configuration load.
+ * Test runs against a local HTTP server, and does not require ConfigHub server.
+ */
+public class AsyncTest
+{
+    private static final String CONFIGURATION =
+            "{\"context\":\"Development;UnitTest\",\"account\":\"ConfigHub\",\"repo\":\"UnitTest\"," +
+            "\"properties\":{\"key.1\":{\"type\":\"Integer\",\"val\":4}},\"files\":{}}";
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private LocalServer server;
+    private ConfigHub configHub;
+
+    @After
+    public void teardown()
+    {
+        executor.shutdownNow();
+        server.close();
+    }
+
+    private void serve(final LocalServer.Handler handler)
+            throws IOException
+    {
+        server = new LocalServer(handler);
+        configHub = server.configHub().setExecutor(executor);
+    }
+
+    @Test
+    public void pullAsyncCompletesWithConfiguration()
+            throws Exception
+    {
+        serve(request -> LocalServer.response(200, CONFIGURATION));
+
+        configHub.pullAsync().get(5, TimeUnit.SECONDS);
+
+        assertEquals(new Integer(4), configHub.properties.getInteger("key.1"));
+        assertTrue(configHub.awaitFirstLoad(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void pullAsyncCompletesExceptionallyOnFailure()
+            throws Exception
+    {
+        serve(request -> LocalServer.response(200, CONFIGURATION));
+        server.close();
+
+        CompletableFuture<Void> pull = configHub.pullAsync();
+        try
+        {
+            pull.get(5, TimeUnit.SECONDS);
+            fail("Failed pull completed normally");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof ConfigHubException);
+        }
+        assertTrue(pull.isCompletedExceptionally());
+        assertFalse(configHub.awaitFirstLoad(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void flushAsyncCompletesWithResponse()
+            throws Exception
+    {
+        serve(request -> LocalServer.response(200, "").header("ETag", "pushed"));
+        configHub.pushQueue.key("db.port").setValue(3306, "Development;UnitTest");
+
+        PushQueue.PushResponse response = configHub.pushQueue.flushAsync().get(5, TimeUnit.SECONDS);
+
+        assertEquals(200, response.getResponseCode());
+        assertEquals("pushed", response.getMessage());
+    }
+
+    @Test
+    public void flushAsyncReportsFailedPush()
+            throws Exception
+    {
+        final AtomicInteger pushes = new AtomicInteger();
+        serve(request -> 1 == pushes.incrementAndGet() ? null : LocalServer.response(200, ""));
+        configHub.pushQueue.key("db.port").setValue(3306, "Development;UnitTest");
+
+        // Push failure is reported in the response, and changes stay queued
+        PushQueue.PushResponse response = configHub.pushQueue.flushAsync().get(5, TimeUnit.SECONDS);
+        assertEquals(0, response.getResponseCode());
+
+        assertEquals(200, configHub.pushQueue.flushAsync().get(5, TimeUnit.SECONDS).getResponseCode());
+        assertEquals(2, server.bodies().size());
+        assertEquals(new String(server.bodies().get(0), StandardCharsets.UTF_8),
+                     new String(server.bodies().get(1), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void awaitFirstLoadTimesOutAndIsReleasedByPull()
+            throws Exception
+    {
+        final CountDownLatch answer = new CountDownLatch(1);
+        serve(request -> {
+            answer.await();
+            return LocalServer.response(200, CONFIGURATION);
+        });
+
+        long start = System.nanoTime();
+        assertFalse(configHub.awaitFirstLoad(50, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+
+        CompletableFuture<Void> pull = configHub.pullAsync();
+        assertFalse(configHub.awaitFirstLoad(20, TimeUnit.MILLISECONDS));
+
+        answer.countDown();
+        assertTrue(configHub.awaitFirstLoad(5, TimeUnit.SECONDS));
+        pull.get(5, TimeUnit.SECONDS);
+    }
+}
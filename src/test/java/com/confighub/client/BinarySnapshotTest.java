@@ -0,0 +1,168 @@
+package com.confighub.client;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests writing configuration to, and reading it from the binary snapshot format.
+ * Test runs locally, and does not require ConfigHub server.
+ */
+public class BinarySnapshotTest
+{
+    private static final String CONFIGURATION =
+            "{\"context\":\"Development;UnitTest\",\"account\":\"ConfigHub\",\"repo\":\"UnitTest\"," +
+            "\"properties\":{" +
+            "\"db.port\":{\"type\":\"Integer\",\"val\":3306}," +
+            "\"db.host\":{\"val\":\"db.example.com\",\"deprecated\":true}," +
+            "\"db.timeout\":{\"type\":\"Long\",\"val\":30000000000}," +
+            "\"ratio\":{\"type\":\"Double\",\"val\":0.75}," +
+            "\"enabled\":{\"type\":\"Boolean\",\"val\":true}," +
+            "\"secret\":{\"type\":\"Text\",\"val\":\"x9f3\",\"encryption\":\"Admins\"}," +
+            "\"countries\":{\"type\":\"List\",\"val\":[\"US\",\"UK\",\"BA\"]}," +
+            "\"labels\":{\"type\":\"Map\",\"val\":{\"team\":\"core\",\"tier\":\"1\"}}," +
+            "\"greeting\":{\"val\":\"Zdravo, svijete \u00e7\u00e9\"}" +
+            "}," +
+            "\"files\":{\"server/conf/tomee.xml\":{\"content\":\"<tomee/>\\n\"}}}";
+
+    private File binary;
+    private File json;
+
+    @Before
+    public void setup()
+            throws IOException
+    {
+        binary = File.createTempFile("confighub", ".bin");
+        json = File.createTempFile("confighub", ".json");
+        binary.deleteOnExit();
+        json.deleteOnExit();
+    }
+
+    private static void assertConfiguration(Properties properties, Files files)
+    {
+        assertEquals(3306, properties.getInt("db.port", 0));
+        assertEquals("db.example.com", properties.get("db.host"));
+        assertTrue(properties.isDeprecated("db.host"));
+        assertEquals(30000000000L, properties.getLong("db.timeout", 0L));
+        assertEquals(0.75, properties.getDouble("ratio", 0d), 0d);
+        assertTrue(properties.getBoolean("enabled", false));
+        assertEquals("Admins", properties.getEncryptionGroup("secret"));
+        assertEquals(Arrays.asList("US", "UK", "BA"), properties.getList("countries"));
+        assertEquals("core", properties.getMap("labels").get("team"));
+        assertEquals("Zdravo, svijete \u00e7\u00e9", properties.get("greeting"));
+        assertNull(properties.get("no.such.key"));
+        assertEquals(9, properties.getKeys().size());
+
+        assertEquals("<tomee/>\n", files.get("server/conf/tomee.xml"));
+        assertFalse(files.hasFile("server/conf/server.xml"));
+    }
+
+    @Test
+    public void binaryRoundTrip()
+            throws IOException
+    {
+        ConfigHub source = new ConfigHub("ConfigHub", "UnitTest");
+        source.readJson(CONFIGURATION, null, null);
+        source.toBinaryFile(binary.getPath());
+
+        ConfigHub configHub = new ConfigHub("ConfigHub", "UnitTest").setContext("Development;UnitTest");
+        configHub.fromBinaryFile(binary.getPath());
+
+        assertConfiguration(configHub.properties, configHub.files);
+        assertEquals("Development;UnitTest", configHub.getSnapshot().getContext());
+    }
+
+    @Test
+    public void convertBetweenFormats()
+            throws IOException
+    {
+        ConfigHub source = new ConfigHub("ConfigHub", "UnitTest");
+        source.readJson(CONFIGURATION, null, null);
+        source.toFile(json.getPath());
+
+        ConfigHub.convertToBinary(json.getPath(), binary.getPath());
+        ConfigHub.convertToJson(binary.getPath(), json.getPath());
+
+        ConfigHub configHub = new ConfigHub("ConfigHub", "UnitTest");
+        configHub.fromFile(json.getPath());
+
+        assertConfiguration(configHub.properties, configHub.files);
+    }
+
+    private static void assertReadOnlyViews(Properties properties, Files files)
+    {
+        final Map<String, Object> visited = new HashMap<>();
+        properties.accept(new PropertyVisitor()
+        {
+            @Override
+            public void visitInt(String key, int value) { visited.put(key, value); }
+
+            @Override
+            public void visitLong(String key, long value) { visited.put(key, value); }
+
+            @Override
+            public void visitBoolean(String key, boolean value) { visited.put(key, value); }
+
+            @Override
+            public void visitList(String key, List<String> value) { visited.put(key, value); }
+        });
+
+        assertEquals(3306, visited.get("db.port"));
+        assertEquals(30000000000L, visited.get("db.timeout"));
+        assertEquals(true, visited.get("enabled"));
+        assertEquals(Arrays.asList("US", "UK", "BA"), visited.get("countries"));
+        assertEquals(4, visited.size());
+
+        final Map<String, String> text = new HashMap<>();
+        properties.forEach(text::put);
+        assertEquals(9, text.size());
+        assertEquals("0.75", text.get("ratio"));
+
+        try
+        {
+            properties.getList("countries").add("DE");
+            fail("List value is modifiable");
+        }
+        catch (UnsupportedOperationException expected) { }
+
+        try
+        {
+            properties.getMap("labels").clear();
+            fail("Map value is modifiable");
+        }
+        catch (UnsupportedOperationException expected) { }
+
+        try
+        {
+            properties.getKeys().remove("db.port");
+            fail("Key set is modifiable");
+        }
+        catch (UnsupportedOperationException expected) { }
+
+        assertSame(properties.getKeys(), properties.getKeys());
+        assertEquals(Collections.singleton("server/conf/tomee.xml"), files.getFileNames());
+    }
+
+    @Test
+    public void readOnlyViews()
+            throws IOException
+    {
+        ConfigHub source = new ConfigHub("ConfigHub", "UnitTest");
+        source.readJson(CONFIGURATION, null, null);
+        assertReadOnlyViews(source.properties, source.files);
+
+        source.toBinaryFile(binary.getPath());
+        ConfigHub configHub = new ConfigHub("ConfigHub", "UnitTest");
+        configHub.fromBinaryFile(binary.getPath());
+        assertReadOnlyViews(configHub.properties, configHub.files);
+    }
+}
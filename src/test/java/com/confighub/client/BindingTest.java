@@ -0,0 +1,117 @@
+package com.confighub.client;
+
+import com.confighub.client.error.ConfigHubException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests binding of properties to interfaces and beans.
+ * Test runs locally, and does not require ConfigHub server.
+ */
+public class BindingTest
+{
+    public interface DbConfig
+    {
+        String host();
+
+        int port();
+
+        @ConfigHubKey("pool.size")
+        Integer poolSize();
+
+        boolean readOnly();
+
+        List<String> replicas();
+
+        default String url()
+        {
+            return "jdbc:postgresql://" + host() + ":" + port();
+        }
+    }
+
+    public static class PoolConfig
+    {
+        private int size = 10;
+
+        @ConfigHubKey("timeout.ms")
+        private long timeout = 1000;
+
+        private String name;
+    }
+
+    public interface InvalidConfig
+    {
+        Object value();
+    }
+
+    private ConfigHub configHub;
+
+    @Before
+    public void setup()
+    {
+        configHub = new ConfigHub("ConfigHub", "UnitTest");
+        configHub.readJson(configuration(5432, 20), null, null);
+    }
+
+    private static String configuration(int port, int poolSize)
+    {
+        return "{\"context\":\"Production\",\"account\":\"ConfigHub\",\"repo\":\"UnitTest\",\"properties\":{" +
+               "\"db.host\":{\"val\":\"db1.example.com\"}," +
+               "\"db.port\":{\"type\":\"Integer\",\"val\":" + port + "}," +
+               "\"db.pool.size\":{\"type\":\"Integer\",\"val\":" + poolSize + "}," +
+               "\"db.pool.timeout.ms\":{\"type\":\"Long\",\"val\":30000}," +
+               "\"db.replicas\":{\"type\":\"List\",\"val\":[\"db2\",\"db3\"]}" +
+               "},\"files\":{}}";
+    }
+
+    @Test
+    public void interfaceReadsLatestSnapshot()
+    {
+        DbConfig db = configHub.properties.bind(DbConfig.class, "db");
+        assertEquals("db1.example.com", db.host());
+        assertEquals(5432, db.port());
+        assertEquals(Integer.valueOf(20), db.poolSize());
+        assertFalse(db.readOnly());
+        assertEquals(Arrays.asList("db2", "db3"), db.replicas());
+        assertEquals("jdbc:postgresql://db1.example.com:5432", db.url());
+
+        configHub.readJson(configuration(5433, 40), null, null);
+        assertEquals(5433, db.port());
+        assertEquals(Integer.valueOf(40), db.poolSize());
+    }
+
+    @Test
+    public void bindingCreatesInstancePerSnapshot()
+    {
+        Binding<PoolConfig> binding = configHub.properties.subtree("db").binding(PoolConfig.class, "pool");
+        PoolConfig pool = binding.get();
+        assertSame(pool, binding.get());
+        assertEquals(20, pool.size);
+        assertEquals(30000, pool.timeout);
+        assertNull(pool.name);
+
+        Binding<DbConfig> db = configHub.properties.binding(DbConfig.class, "db");
+        DbConfig pinned = db.get();
+
+        configHub.readJson(configuration(5433, 40), null, null);
+        PoolConfig refreshed = binding.get();
+        assertNotSame(pool, refreshed);
+        assertEquals(40, refreshed.size);
+        assertEquals(20, pool.size);
+
+        assertEquals(5432, pinned.port());
+        assertEquals(5433, db.get().port());
+        assertEquals("jdbc:postgresql://db1.example.com:5432", pinned.url());
+    }
+
+    @Test(expected = ConfigHubException.class)
+    public void unsupportedMemberTypeIsRejected()
+    {
+        configHub.properties.bind(InvalidConfig.class, "db");
+    }
+}
@@ -0,0 +1,177 @@
+package com.confighub.client;
+
+import com.confighub.client.error.ConfigHubException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests starting from the last-known-good configuration cache, and its background revalidation.
+ * Test runs against a local HTTP server, and does not require ConfigHub server.
+ */
+public class CacheTest
+{
+    private final CountDownLatch answer = new CountDownLatch(1);
+    private File cache;
+    private LocalServer server;
+    private ConfigHub configHub;
+
+    @Before
+    public void setup()
+            throws IOException
+    {
+        cache = File.createTempFile("confighub", ".cache");
+        cache.delete();
+    }
+
+    @After
+    public void teardown()
+    {
+        if (null != configHub)
+            configHub.stopRefresh();
+        if (null != server)
+            server.close();
+        cache.delete();
+    }
+
+    private static String configuration(final int version)
+    {
+        return "{\"context\":\"Development;UnitTest\",\"account\":\"ConfigHub\",\"repo\":\"UnitTest\"," +
+               "\"properties\":{\"key.1\":{\"type\":\"Integer\",\"val\":" + version + "}},\"files\":{}}";
+    }
+
+    private ConfigHub configHub()
+    {
+        return server.configHub().setCacheFile(cache.getPath());
+    }
+
+    private void serve(final int version)
+            throws IOException
+    {
+        server = new LocalServer(request -> LocalServer.response(200, configuration(version)));
+        configHub = configHub();
+    }
+
+    /*
+     * Pull the configuration from a server which is then stopped, leaving it in the cache only.
+     */
+    private void cache(final int version)
+            throws IOException
+    {
+        try (LocalServer earlier = new LocalServer(request -> LocalServer.response(200, configuration(version))))
+        {
+            earlier.configHub().setCacheFile(cache.getPath()).pull();
+        }
+        assertTrue(cache.isFile());
+    }
+
+    private void awaitCachedVersion(final int version)
+            throws IOException, InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (version != BinarySnapshot.read(cache).properties.getInt("key.1", -1))
+        {
+            assertTrue("Cache was not written", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void servesCacheAndRevalidatesInBackground()
+            throws IOException, InterruptedException
+    {
+        cache(1);
+        server = new LocalServer(request -> {
+            answer.await();
+            return LocalServer.response(200, configuration(2));
+        });
+        configHub = configHub();
+
+        // Cached configuration is served while the server has not answered yet
+        configHub.startFromCache();
+        assertEquals(1, configHub.properties.getInt("key.1", -1));
+
+        answer.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (2 != configHub.properties.getInt("key.1", -1))
+        {
+            assertTrue("Configuration was not revalidated", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+        assertEquals(1, server.requests().size());
+
+        // Revalidated configuration replaces the cache
+        awaitCachedVersion(2);
+    }
+
+    @Test
+    public void unreachableServerKeepsServingCache()
+            throws IOException, InterruptedException
+    {
+        cache(1);
+        serve(2);
+        server.close();
+
+        configHub.startFromCache();
+        Thread.sleep(100);
+        assertEquals(1, configHub.properties.getInt("key.1", -1));
+    }
+
+    @Test
+    public void missingCacheIsPulled()
+            throws IOException
+    {
+        serve(3);
+
+        configHub.startFromCache();
+
+        assertEquals(1, server.requests().size());
+        assertEquals(3, configHub.properties.getInt("key.1", -1));
+        assertTrue(cache.isFile());
+    }
+
+    @Test
+    public void corruptCacheIsPulled()
+            throws IOException
+    {
+        try (FileOutputStream out = new FileOutputStream(cache))
+        {
+            out.write("not a snapshot".getBytes(StandardCharsets.UTF_8));
+        }
+        serve(4);
+
+        configHub.startFromCache();
+
+        assertEquals(1, server.requests().size());
+        assertEquals(4, configHub.properties.getInt("key.1", -1));
+    }
+
+    @Test(expected = ConfigHubException.class)
+    public void missingCacheAndUnreachableServer()
+            throws IOException
+    {
+        serve(5);
+        server.close();
+
+        configHub.startFromCache();
+    }
+
+    @Test(expected = ConfigHubException.class)
+    public void missingCacheAndServerError()
+            throws IOException
+    {
+        server = new LocalServer(request -> LocalServer.response(500, ""));
+        configHub = configHub();
+
+        configHub.startFromCache();
+    }
+}
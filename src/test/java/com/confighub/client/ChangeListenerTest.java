@@ -0,0 +1,115 @@
+package com.confighub.client;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests diffing of snapshots, and dispatch of changes to listeners.
+ * Test runs locally, and does not require ConfigHub server.
+ */
+public class ChangeListenerTest
+{
+    private final List<Runnable> scheduled = new ArrayList<>();
+    private ConfigHub configHub;
+
+    @Before
+    public void setup()
+    {
+        configHub = new ConfigHub("ConfigHub", "UnitTest").setListenerExecutor(scheduled::add);
+    }
+
+    private static String configuration(String poolSize, String logLevel, String extra, String logConfig)
+    {
+        return "{\"context\":\"Production\",\"account\":\"ConfigHub\",\"repo\":\"UnitTest\",\"properties\":{" +
+               "\"db.pool.size\":{\"type\":\"Integer\",\"val\":" + poolSize + "}," +
+               "\"logger.level\":{\"val\":\"" + logLevel + "\"}" +
+               (null == extra ? "" : ",\"" + extra + "\":{\"val\":\"x\"}") +
+               "},\"files\":{\"log4j2.xml\":{\"content\":\"" + logConfig + "\"}}}";
+    }
+
+    private void runScheduled()
+    {
+        List<Runnable> tasks = new ArrayList<>(scheduled);
+        scheduled.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+    @Test
+    public void diffReportsAddedRemovedAndChangedKeys()
+    {
+        configHub.readJson(configuration("10", "INFO", "feature.a", "<a/>"), null, null);
+        Snapshot previous = configHub.getSnapshot();
+
+        configHub.readJson(configuration("20", "INFO", "feature.b", "<a/>"), null, null);
+        Changes changes = configHub.properties.changesSince(previous);
+
+        assertEquals(Collections.singleton("feature.b"), changes.getAdded());
+        assertEquals(Collections.singleton("feature.a"), changes.getRemoved());
+        assertEquals(Collections.singleton("db.pool.size"), changes.getChanged());
+        assertTrue(changes.getChangedFiles().isEmpty());
+
+        // Same document pulled again
+        previous = configHub.getSnapshot();
+        configHub.readJson(configuration("20", "INFO", "feature.b", "<a/>"), null, null);
+        assertNotSame(previous, configHub.getSnapshot());
+        assertTrue(configHub.properties.changesSince(previous).isEmpty());
+    }
+
+    @Test
+    public void listenersAreCalledForTheirKeysAndFiles()
+    {
+        configHub.readJson(configuration("10", "INFO", null, "<a/>"), null, null);
+        runScheduled();
+
+        final List<Changes> pool = new ArrayList<>();
+        final List<Changes> logging = new ArrayList<>();
+        final List<Changes> files = new ArrayList<>();
+        configHub.addKeyListener("db.pool.size", pool::add)
+                 .addPrefixListener("logger.", logging::add)
+                 .addFileListener("log4j2.xml", files::add);
+
+        configHub.readJson(configuration("20", "INFO", null, "<a/>"), null, null);
+        runScheduled();
+        assertEquals(1, pool.size());
+        assertTrue(logging.isEmpty());
+        assertTrue(files.isEmpty());
+
+        configHub.readJson(configuration("20", "DEBUG", null, "<b/>"), null, null);
+        runScheduled();
+        assertEquals(1, pool.size());
+        assertEquals(Collections.singleton("logger.level"), logging.get(0).getChanged());
+        assertEquals(Collections.singleton("log4j2.xml"), files.get(0).getChangedFiles());
+        assertTrue(files.get(0).getChanged().isEmpty());
+    }
+
+    @Test
+    public void rapidRefreshesAreCoalesced()
+    {
+        configHub.readJson(configuration("10", "INFO", null, "<a/>"), null, null);
+        Snapshot first = configHub.getSnapshot();
+
+        final List<Changes> changes = new ArrayList<>();
+        configHub.addPrefixListener("", changes::add);
+
+        configHub.readJson(configuration("20", "INFO", "feature.a", "<a/>"), null, null);
+        configHub.readJson(configuration("30", "WARN", "feature.a", "<a/>"), null, null);
+        configHub.readJson(configuration("30", "WARN", null, "<a/>"), null, null);
+        assertEquals(1, scheduled.size());
+        runScheduled();
+
+        assertEquals(1, changes.size());
+        assertSame(first, changes.get(0).getPrevious());
+        assertSame(configHub.getSnapshot(), changes.get(0).getCurrent());
+        assertEquals(new HashSet<>(Arrays.asList("db.pool.size", "logger.level")), changes.get(0).getChanged());
+        assertTrue(changes.get(0).getAdded().isEmpty());
+        assertTrue(changes.get(0).getRemoved().isEmpty());
+    }
+}
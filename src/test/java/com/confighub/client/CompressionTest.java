@@ -0,0 +1,131 @@
+package com.confighub.client;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests compressed pulls and pushes, and counts of bytes transferred.
+ * Test runs against a local HTTP server, and does not require ConfigHub server.
+ */
+public class CompressionTest
+{
+    private static final String CONFIGURATION =
+            "{\"context\":\"Development;UnitTest\",\"account\":\"ConfigHub\",\"repo\":\"UnitTest\"," +
+            "\"properties\":{\"key.1\":{\"type\":\"Integer\",\"val\":1}," +
+            "\"key.2\":{\"val\":\"line one\\nline two\"}},\"files\":{}}";
+
+    private LocalServer server;
+
+    @After
+    public void teardown()
+    {
+        server.close();
+    }
+
+    private static byte[] compress(final String body, final String encoding)
+            throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = "gzip".equals(encoding)
+                                ? new GZIPOutputStream(bytes)
+                                : new DeflaterOutputStream(bytes, new Deflater(Deflater.DEFAULT_COMPRESSION,
+                                                                               "raw".equals(encoding))))
+        {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    /*
+     * Pull the configuration sent compressed, with the given Content-Encoding header.
+     */
+    private ConfigHub pull(final String encoding, final byte[] body)
+            throws IOException
+    {
+        server = new LocalServer(request -> LocalServer.response(200, body).header("Content-Encoding", encoding));
+        ConfigHub configHub = server.configHub();
+        configHub.pull();
+
+        assertEquals("gzip, deflate", server.requests().get(0).getFirst("Accept-Encoding"));
+        assertEquals(new Integer(1), configHub.properties.getInteger("key.1"));
+        assertEquals("line one\nline two", configHub.properties.get("key.2"));
+        return configHub;
+    }
+
+    @Test
+    public void pullDecompressesGzip()
+            throws IOException
+    {
+        byte[] body = compress(CONFIGURATION, "gzip");
+        TransferStats stats = pull("gzip", body).getTransferStats();
+
+        assertEquals(body.length, stats.getBytesReceived());
+        assertEquals(CONFIGURATION.getBytes(StandardCharsets.UTF_8).length, stats.getBytesReceivedDecoded());
+    }
+
+    @Test
+    public void pullDecompressesZlibDeflate()
+            throws IOException
+    {
+        pull("deflate", compress(CONFIGURATION, "deflate"));
+    }
+
+    @Test
+    public void pullDecompressesRawDeflate()
+            throws IOException
+    {
+        pull("deflate", compress(CONFIGURATION, "raw"));
+    }
+
+    @Test
+    public void pullWithoutCompression()
+            throws IOException
+    {
+        server = new LocalServer(request -> LocalServer.response(200, CONFIGURATION));
+        ConfigHub configHub = server.configHub().setCompression(false);
+        configHub.pull();
+
+        assertNull(server.requests().get(0).getFirst("Accept-Encoding"));
+        assertEquals(new Integer(1), configHub.properties.getInteger("key.1"));
+    }
+
+    @Test
+    public void pushIsGzipped()
+            throws IOException
+    {
+        server = new LocalServer(request -> LocalServer.response(200, ""));
+        ConfigHub configHub = server.configHub().setPushCompression(true);
+
+        configHub.pushQueue.key("db.port").setValue(3306, "Development;UnitTest");
+        assertEquals(200, configHub.pushQueue.flush().getResponseCode());
+
+        byte[] sent = server.bodies().get(0);
+        assertEquals("gzip", server.requests().get(0).getFirst("Content-Encoding"));
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(sent)))
+        {
+            byte[] buffer = new byte[8192];
+            for (int n; (n = in.read(buffer)) > 0; )
+                json.write(buffer, 0, n);
+        }
+        assertTrue(new String(json.toByteArray(), StandardCharsets.UTF_8).contains("\"key\":\"db.port\""));
+
+        TransferStats stats = configHub.getTransferStats();
+        assertEquals(sent.length, stats.getBytesSent());
+        assertEquals(json.size(), stats.getBytesSentEncoded());
+    }
+}
@@ -0,0 +1,113 @@
+package com.confighub.client;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests reading configuration from, and writing it to the JSON configuration file.
+ * Test runs locally, and does not require ConfigHub server.
+ */
+public class JsonSnapshotTest
+{
+    private static final String GREETING = "Gr\u00fc\u00dfe, \u0417\u0434\u0440\u0430\u0432\u043e \ud83d\ude00";
+
+    private static final String CONFIGURATION =
+            "{\"context\":\"Development;UnitTest\",\"account\":\"ConfigHub\",\"repo\":\"UnitTest\"," +
+            "\"generatedOn\":{\"date\":[2016,1,1],\"by\":null}," +
+            "\"properties\":{" +
+            "\"db.port\":{\"type\":\"Integer\",\"val\":3306,\"comment\":\"Primary port\"}," +
+            "\"db.host\":{\"val\":\"db.example.com\",\"deprecated\":true,\"context\":[\"Development\"]}," +
+            "\"secret\":{\"type\":\"Text\",\"val\":\"x9f3\",\"encryption\":\"Admins\"}," +
+            "\"motd\":{\"val\":\"line one\\nline two\\r\\n\\ttabbed\",\"comment\":{\"author\":\"ops\"}}," +
+            "\"greeting\":{\"val\":\"" + GREETING + "\"}," +
+            "\"countries\":{\"type\":\"List\",\"val\":[\"US\",\"UK\",\"BA\"]}," +
+            "\"labels\":{\"type\":\"Map\",\"val\":{\"team\":\"core\",\"tier\":\"1\"},\"unknown\":[1,[2]]}" +
+            "}," +
+            "\"files\":{\"server/conf/tomee.xml\":{\"content\":\"<tomee>\\n  <!-- " + GREETING + " -->\\n</tomee>\\n\"," +
+            "\"size\":42}}}";
+
+    private File source;
+    private File saved;
+
+    @Before
+    public void setup()
+            throws IOException
+    {
+        source = File.createTempFile("confighub", ".json");
+        saved = File.createTempFile("confighub", ".json");
+        source.deleteOnExit();
+        saved.deleteOnExit();
+
+        // Written as UTF-8 bytes, so reading does not depend on the platform charset
+        try (OutputStream out = new FileOutputStream(source))
+        {
+            out.write(CONFIGURATION.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void assertConfiguration(final ConfigHub configHub)
+    {
+        Properties properties = configHub.properties;
+        assertEquals(3306, properties.getInt("db.port", 0));
+        assertEquals("db.example.com", properties.get("db.host"));
+        assertTrue(properties.isDeprecated("db.host"));
+        assertEquals("Admins", properties.getEncryptionGroup("secret"));
+        assertEquals("line one\nline two\r\n\ttabbed", properties.get("motd"));
+        assertEquals(GREETING, properties.get("greeting"));
+        assertEquals(Arrays.asList("US", "UK", "BA"), properties.getList("countries"));
+        assertEquals("core", properties.getMap("labels").get("team"));
+        assertEquals("1", properties.getMap("labels").get("tier"));
+        assertEquals(new HashSet<>(Arrays.asList("db.port", "db.host", "secret", "motd", "greeting",
+                                                 "countries", "labels")),
+                     properties.getKeys());
+
+        assertEquals("<tomee>\n  <!-- " + GREETING + " -->\n</tomee>\n",
+                     configHub.files.get("server/conf/tomee.xml"));
+        assertEquals("Development;UnitTest", configHub.getSnapshot().getContext());
+    }
+
+    @Test
+    public void readsDocumentAndSkipsUnknownFields()
+            throws IOException
+    {
+        ConfigHub configHub = new ConfigHub("ConfigHub", "UnitTest");
+        configHub.fromFile(source.getPath());
+
+        assertConfiguration(configHub);
+    }
+
+    @Test
+    public void savedFileIsReadBack()
+            throws IOException
+    {
+        ConfigHub original = new ConfigHub("ConfigHub", "UnitTest");
+        original.fromFile(source.getPath());
+        original.toFile(saved.getPath());
+
+        ConfigHub configHub = new ConfigHub("ConfigHub", "UnitTest");
+        configHub.fromFile(saved.getPath());
+        assertConfiguration(configHub);
+
+        // Saved again, it is the same file
+        File again = File.createTempFile("confighub", ".json");
+        again.deleteOnExit();
+        configHub.toFile(again.getPath());
+        assertArrayEquals(java.nio.file.Files.readAllBytes(saved.toPath()),
+                          java.nio.file.Files.readAllBytes(again.toPath()));
+
+        // Fields the client does not read are not saved
+        String json = new String(java.nio.file.Files.readAllBytes(saved.toPath()), StandardCharsets.UTF_8);
+        assertFalse(json.contains("comment"));
+        assertFalse(json.contains("generatedOn"));
+    }
+}
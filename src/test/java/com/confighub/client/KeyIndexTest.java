@@ -0,0 +1,117 @@
+package com.confighub.client;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests subtree views and pattern queries over the key index.
+ * Test runs locally, and does not require ConfigHub server.
+ */
+public class KeyIndexTest
+{
+    private static final String CONFIGURATION =
+            "{\"context\":\"Production\",\"account\":\"ConfigHub\",\"repo\":\"UnitTest\",\"properties\":{" +
+            "\"db.port\":{\"type\":\"Integer\",\"val\":5432}," +
+            "\"db.primary.host\":{\"val\":\"db1.example.com\"}," +
+            "\"db.primary.port\":{\"type\":\"Integer\",\"val\":5433}," +
+            "\"db.primary.pool.size\":{\"type\":\"Integer\",\"val\":20}," +
+            "\"db.replica.port\":{\"type\":\"Integer\",\"val\":5434}," +
+            "\"dbx.primary.port\":{\"type\":\"Integer\",\"val\":1}," +
+            "\"logger.level\":{\"val\":\"INFO\"}" +
+            "},\"files\":{}}";
+
+    private ConfigHub configHub;
+
+    @Before
+    public void setup()
+    {
+        configHub = new ConfigHub("ConfigHub", "UnitTest");
+        configHub.readJson(CONFIGURATION, null, null);
+    }
+
+    private static void assertQueries(Properties properties)
+    {
+        Properties primary = properties.subtree("db.primary");
+        assertEquals(5433, primary.getInt("port", 0));
+        assertEquals("db1.example.com", primary.get("host"));
+        assertEquals(new HashSet<>(Arrays.asList("host", "port", "pool.size")), primary.getKeys());
+        assertEquals(20, primary.subtree("pool").getInt("size", 0));
+        assertEquals(20, primary.intHandle("pool.size", 0).get());
+
+        assertEquals(new HashSet<>(Arrays.asList("db.primary.port", "db.replica.port")), properties.find("db.*.port"));
+        assertEquals(new HashSet<>(Arrays.asList("db.primary.port", "dbx.primary.port")), properties.find("*.primary.port"));
+        assertEquals(Collections.singleton("pool.size"), primary.find("*.size"));
+        assertTrue(properties.find("db.*").contains("db.port"));
+        assertTrue(properties.find("cache.*.port").isEmpty());
+        assertTrue(properties.subtree("cache").getKeys().isEmpty());
+
+        try
+        {
+            properties.find("db.*").add("db.user");
+            fail("Found keys were modified");
+        }
+        catch (UnsupportedOperationException expected)
+        {
+        }
+    }
+
+    @Test
+    public void subtreeAndPatternQueries()
+    {
+        assertQueries(configHub.properties);
+        assertQueries(configHub.getSnapshot().properties);
+    }
+
+    @Test
+    public void queriesOverMappedSnapshot()
+            throws IOException
+    {
+        File binary = File.createTempFile("confighub", ".bin");
+        binary.deleteOnExit();
+        configHub.toBinaryFile(binary.getPath());
+
+        ConfigHub mapped = new ConfigHub("ConfigHub", "UnitTest");
+        mapped.fromBinaryFile(binary.getPath());
+        assertQueries(mapped.properties);
+    }
+
+    @Test
+    public void prefixViewIteratesOneSnapshotDuringPulls()
+            throws InterruptedException
+    {
+        final String other = CONFIGURATION.replace("db.primary.pool.size", "db.primary.pool.max");
+        final AtomicBoolean pulling = new AtomicBoolean(true);
+        Thread puller = new Thread(() -> {
+            for (int i = 0; pulling.get(); i++)
+                configHub.readJson(0 == i % 2 ? other : CONFIGURATION, null, null);
+        });
+        puller.start();
+
+        try
+        {
+            Properties primary = configHub.properties.subtree("db.primary");
+            final AtomicInteger visited = new AtomicInteger();
+            for (int i = 0; i < 20000; i++)
+            {
+                primary.forEach((key, value) -> visited.incrementAndGet());
+                primary.accept(new PropertyVisitor() { });
+            }
+            assertEquals(20000 * 3, visited.get());
+        }
+        finally
+        {
+            pulling.set(false);
+            puller.join();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.confighub.client;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP server on the loopback interface, answering pull and push requests in tests.  ConfigHub
+ * objects connect to it with {@link #configHub()}.
+ */
+final class LocalServer
+        implements AutoCloseable
+{
+    /**
+     * Answers a request, or returns null to close the connection without a response.
+     */
+    interface Handler
+    {
+        Response handle(Headers request)
+                throws Exception;
+    }
+
+    static final class Response
+    {
+        final int status;
+        final byte[] body;
+        final Map<String, String> headers = new LinkedHashMap<>();
+
+        private Response(final int status, final byte[] body)
+        {
+            this.status = status;
+            this.body = body;
+        }
+
+        Response header(final String name, final String value)
+        {
+            this.headers.put(name, value);
+            return this;
+        }
+    }
+
+    static Response response(final int status, final String body)
+    {
+        return new Response(status, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Response response(final int status, final byte[] body)
+    {
+        return new Response(status, body);
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<Headers> requests = Collections.synchronizedList(new ArrayList<>());
+    private final List<byte[]> bodies = Collections.synchronizedList(new ArrayList<>());
+
+    LocalServer(final Handler handler)
+            throws IOException
+    {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", exchange -> answer(exchange, handler));
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    private void answer(final HttpExchange exchange, final Handler handler)
+            throws IOException
+    {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody())
+        {
+            byte[] buffer = new byte[8192];
+            for (int n; (n = in.read(buffer)) > 0; )
+                body.write(buffer, 0, n);
+        }
+        this.bodies.add(body.toByteArray());
+        this.requests.add(exchange.getRequestHeaders());
+
+        Response response;
+        try
+        {
+            response = handler.handle(exchange.getRequestHeaders());
+        }
+        catch (Exception e)
+        {
+            response = response(500, "");
+        }
+
+        // No response: connection is closed, as if the server went away
+        if (null == response)
+        {
+            exchange.close();
+            return;
+        }
+
+        for (Map.Entry<String, String> header : response.headers.entrySet())
+            exchange.getResponseHeaders().add(header.getKey(), header.getValue());
+
+        exchange.sendResponseHeaders(response.status, 0 == response.body.length ? -1 : response.body.length);
+        try (OutputStream out = exchange.getResponseBody())
+        {
+            out.write(response.body);
+        }
+    }
+
+    /**
+     * @return address of the server, as set with {@link ConfigHub#setConfighubServerAddress(String)}
+     */
+    String address()
+    {
+        return "127.0.0.1:" + this.server.getAddress().getPort();
+    }
+
+    /**
+     * @return ConfigHub which pulls from, and pushes to this server over plain http
+     */
+    ConfigHub configHub()
+    {
+        return new ConfigHub("ConfigHub", "UnitTest")
+                .setContext("Development;UnitTest")
+                .setConfighubServerAddress(address())
+                .setSecureConnection(false);
+    }
+
+    /**
+     * @return headers of the requests received so far
+     */
+    List<Headers> requests()
+    {
+        synchronized (this.requests)
+        {
+            return new ArrayList<>(this.requests);
+        }
+    }
+
+    /**
+     * @return bodies of the requests received so far, as sent
+     */
+    List<byte[]> bodies()
+    {
+        synchronized (this.bodies)
+        {
+            return new ArrayList<>(this.bodies);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+}
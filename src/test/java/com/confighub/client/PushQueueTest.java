@@ -0,0 +1,703 @@
+package com.confighub.client;
+
+import com.confighub.client.error.ConfigHubException;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongPredicate;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests queuing and pushing of changes.
+ * Test runs locally, and does not require ConfigHub server.
+ */
+public class PushQueueTest
+{
+    private final List<JsonObject> pushes = new CopyOnWriteArrayList<>();
+    private ConfigHub configHub;
+
+    @Before
+    public void setup()
+    {
+        configHub = new ConfigHub("ConfigHub", "UnitTest")
+                .setConfighubServerAddress("demo.confighub.com")
+                .setTransport(new InMemoryTransport(request -> {
+                    ByteArrayOutputStream body = new ByteArrayOutputStream();
+                    request.writeBody(body);
+                    String json = new String(body.toByteArray(), StandardCharsets.UTF_8);
+                    pushes.add(new JsonParser().parse(json).getAsJsonObject());
+                    return InMemoryTransport.response(200, "");
+                }));
+    }
+
+    @After
+    public void teardown()
+    {
+        configHub.pushQueue.disableAutoFlush();
+        configHub.pushQueue.disableCounterRollups();
+    }
+
+    private static int values(JsonObject push)
+    {
+        int count = 0;
+        for (JsonElement key : push.getAsJsonArray("data"))
+        {
+            JsonArray values = key.getAsJsonObject().getAsJsonArray("values");
+            count += null == values ? 0 : values.size();
+        }
+        return count;
+    }
+
+    @Test
+    public void autoFlushOnBatchSize()
+            throws InterruptedException
+    {
+        configHub.pushQueue.enableAutoFlush(10, 1 << 20, 1, TimeUnit.HOURS);
+
+        for (int i = 0; i < 9; i++)
+            configHub.pushQueue.key("key." + i).setValue(i, "Development");
+
+        // Coalesced with the queued value, so it does not count towards the batch
+        configHub.pushQueue.key("key.0").setValue(100, "Development");
+
+        Thread.sleep(100);
+        assertTrue(pushes.isEmpty());
+
+        configHub.pushQueue.key("key.9").setValue(9, "Development");
+        for (int i = 0; i < 100 && pushes.isEmpty(); i++)
+            Thread.sleep(10);
+
+        assertEquals(1, pushes.size());
+        assertEquals(10, values(pushes.get(0)));
+    }
+
+    @Test
+    public void autoFlushOnLatency()
+            throws InterruptedException
+    {
+        configHub.pushQueue.enableAutoFlush(1000, 1 << 20, 50, TimeUnit.MILLISECONDS);
+        configHub.pushQueue.key("db.port").enablePush().setValue(3306, "Development");
+        configHub.pushQueue.key("db.port").setValue(3307, "Development");
+
+        for (int i = 0; i < 100 && pushes.isEmpty(); i++)
+            Thread.sleep(10);
+
+        assertEquals(1, pushes.size());
+        JsonObject key = pushes.get(0).getAsJsonArray("data").get(0).getAsJsonObject();
+        assertEquals("db.port", key.get("key").getAsString());
+        assertEquals("true", key.get("push").getAsString());
+        assertEquals("3307", key.getAsJsonArray("values").get(0).getAsJsonObject().get("value").getAsString());
+    }
+
+    @Test
+    public void pushStreamsUtf8()
+    {
+        final List<byte[]> bodies = new ArrayList<>();
+        configHub.setPushCompression(true)
+                 .setTransport(new InMemoryTransport(request -> {
+                     ByteArrayOutputStream body = new ByteArrayOutputStream();
+                     request.writeBody(body);
+                     bodies.add(body.toByteArray());
+                     assertEquals("gzip", request.getHeader("Content-Encoding"));
+                     return InMemoryTransport.response(200, "");
+                 }));
+
+        Map<String, String> labels = new HashMap<>();
+        labels.put("team", "\u010cevapi");
+        configHub.pushQueue.setChangeComment("Caf\u00e9");
+        configHub.pushQueue.key("greeting").setValue("Zdravo, svijete \u00e7\u00e9 \u4e16\u754c", "Development");
+        configHub.pushQueue.key("labels").setValue(labels, null);
+        assertEquals(200, configHub.pushQueue.flush().getResponseCode());
+
+        JsonObject push = new JsonParser().parse(new InputStreamReader(gunzip(bodies.get(0)), StandardCharsets.UTF_8))
+                                          .getAsJsonObject();
+        assertEquals("Caf\u00e9", push.get("changeComment").getAsString());
+
+        Map<String, JsonObject> values = new HashMap<>();
+        for (JsonElement key : push.getAsJsonArray("data"))
+            values.put(key.getAsJsonObject().get("key").getAsString(),
+                       key.getAsJsonObject().getAsJsonArray("values").get(0).getAsJsonObject());
+
+        assertEquals("Zdravo, svijete \u00e7\u00e9 \u4e16\u754c", values.get("greeting").get("value").getAsString());
+        assertEquals("\u010cevapi", values.get("labels").getAsJsonObject("value").get("team").getAsString());
+        assertFalse(values.get("labels").has("context"));
+        assertEquals(bodies.get(0).length, configHub.getTransferStats().getBytesSent());
+    }
+
+    @Test(expected = ConfigHubException.class)
+    public void invalidListIsRejectedWhenSet()
+    {
+        List<Object> list = new ArrayList<>();
+        list.add(1);
+        configHub.pushQueue.key("numbers").setValue(list, "Development");
+    }
+
+    private static InputStream gunzip(byte[] body)
+    {
+        try
+        {
+            return new GZIPInputStream(new ByteArrayInputStream(body));
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    public void chunkedFlushIsolatesFailures()
+    {
+        final AtomicBoolean failed = new AtomicBoolean();
+        configHub.setTransport(new InMemoryTransport(request -> {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            request.writeBody(body);
+            JsonObject push = new JsonParser().parse(new String(body.toByteArray(), StandardCharsets.UTF_8))
+                                              .getAsJsonObject();
+
+            // Chunk with key.0 fails once without a response
+            for (JsonElement key : push.getAsJsonArray("data"))
+                if ("key.0".equals(key.getAsJsonObject().get("key").getAsString()) && failed.compareAndSet(false, true))
+                    throw new IOException("Connection reset");
+
+            pushes.add(push);
+            return InMemoryTransport.response(200, "");
+        }));
+
+        configHub.pushQueue.setChunking(100, 4);
+        for (int i = 0; i < 1000; i++)
+            configHub.pushQueue.key("key." + i).setValue(i, "Development");
+
+        PushQueue.PushResponse response = configHub.pushQueue.flush();
+        assertEquals(0, response.getResponseCode());
+        assertEquals(1000, response.getKeys());
+        assertTrue(response.getChunks().size() >= 10);
+
+        int failedKeys = 0;
+        for (PushQueue.PushResponse chunk : response.getChunks())
+        {
+            assertTrue(chunk.getKeys() <= 100);
+            if (0 == chunk.getResponseCode())
+                failedKeys += chunk.getKeys();
+        }
+
+        // Only the failed chunk is pushed again
+        response = configHub.pushQueue.flush();
+        assertEquals(200, response.getResponseCode());
+        assertEquals(failedKeys, response.getKeys());
+
+        Map<String, Integer> pushed = new HashMap<>();
+        for (JsonObject push : pushes)
+            for (JsonElement key : push.getAsJsonArray("data"))
+                assertNull(pushed.put(key.getAsJsonObject().get("key").getAsString(), 1));
+
+        assertEquals(1000, pushed.size());
+    }
+
+    @Test
+    public void journalReplaysUnpushedChanges()
+            throws IOException
+    {
+        File journal = File.createTempFile("confighub", ".journal");
+        journal.deleteOnExit();
+
+        configHub.setTransport(new InMemoryTransport(request -> {
+            throw new IOException("Connection refused");
+        }));
+        configHub.pushQueue.setJournal(journal.getPath());
+        configHub.pushQueue.key("endpoint").enablePush().setValue("10.0.0.1:8080", "Production");
+        configHub.pushQueue.key("labels").setValue(Collections.singletonMap("zone", "\u00e9ast"), "Production");
+        configHub.pushQueue.key("endpoint").setValue("10.0.0.2:8080", "Production");
+        assertEquals(0, configHub.pushQueue.flush().getResponseCode());
+        long committed = journal.length();
+        configHub.pushQueue.key("pushed.after.failure").setValue(1, "Production");
+
+        // Written to the file by the next group commit
+        awaitLength(journal, length -> length > committed);
+
+        // Process exits without pushing; a new one replays the journal
+        ConfigHub restarted = new ConfigHub("ConfigHub", "UnitTest")
+                .setConfighubServerAddress("demo.confighub.com")
+                .setTransport(new InMemoryTransport(request -> {
+                    ByteArrayOutputStream body = new ByteArrayOutputStream();
+                    request.writeBody(body);
+                    pushes.add(new JsonParser().parse(new String(body.toByteArray(), StandardCharsets.UTF_8))
+                                               .getAsJsonObject());
+                    return InMemoryTransport.response(200, "");
+                }));
+        restarted.pushQueue.setJournal(journal.getPath());
+        assertEquals(200, restarted.pushQueue.flush().getResponseCode());
+        restarted.pushQueue.closeJournal();
+
+        Map<String, JsonObject> pushed = new HashMap<>();
+        for (JsonElement key : pushes.get(0).getAsJsonArray("data"))
+            pushed.put(key.getAsJsonObject().get("key").getAsString(), key.getAsJsonObject());
+
+        assertEquals(3, pushed.size());
+        assertEquals("true", pushed.get("endpoint").get("push").getAsString());
+        assertEquals("10.0.0.2:8080", pushed.get("endpoint").getAsJsonArray("values").get(0).getAsJsonObject()
+                                            .get("value").getAsString());
+        assertEquals("\u00e9ast", pushed.get("labels").getAsJsonArray("values").get(0).getAsJsonObject()
+                                         .getAsJsonObject("value").get("zone").getAsString());
+
+        // Acknowledged changes are not replayed again
+        ConfigHub again = new ConfigHub("ConfigHub", "UnitTest");
+        again.pushQueue.setJournal(journal.getPath());
+        assertEquals(0, journal.length());
+        again.pushQueue.closeJournal();
+        configHub.pushQueue.closeJournal();
+    }
+
+    @Test
+    public void journalIsCompactedAfterFlush()
+            throws IOException
+    {
+        File journal = File.createTempFile("confighub", ".journal");
+        journal.deleteOnExit();
+
+        configHub.pushQueue.setJournal(journal.getPath());
+        for (int i = 0; i < 30000; i++)
+            configHub.pushQueue.key("key." + i).setValue(i, "Development");
+
+        awaitLength(journal, length -> length > 1 << 20);
+        assertEquals(200, configHub.pushQueue.flush().getResponseCode());
+
+        // Compacted by the committer thread
+        awaitLength(journal, length -> 0 == length);
+        configHub.pushQueue.closeJournal();
+    }
+
+    private static void awaitLength(final File file, final LongPredicate expected)
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!expected.test(file.length()))
+        {
+            assertTrue("Unexpected journal length " + file.length(), System.nanoTime() < deadline);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    @Test
+    public void unchangedValuesAreNotPushed()
+    {
+        configHub.readJson(valueContextConfiguration("Development;UnitTest", "key.1", "key.2", "key.3", "key.4",
+                                                     "key.5", "key.7"), null, null);
+
+        configHub.pushQueue.key("key.1").setValue(5, "Development;UnitTest");
+        configHub.pushQueue.key("key.2").setValue(6, "Development;UnitTest");
+        configHub.pushQueue.key("key.3").setValue("5", "Production;UnitTest");
+        configHub.pushQueue.key("key.4").setValue(5, "Development;UnitTest", false);
+        configHub.pushQueue.key("key.5").deprecate().setValue(5, "Development;UnitTest");
+        assertEquals(200, configHub.pushQueue.flush().getResponseCode());
+
+        assertEquals(1, configHub.pushQueue.getSkippedCount());
+        assertEquals(1, pushes.size());
+        assertEquals(4, pushes.get(0).getAsJsonArray("data").size());
+
+        // Batch of unchanged values makes no request
+        configHub.pushQueue.key("key.1").setValue("5", "Development;UnitTest");
+        configHub.pushQueue.key("key.7").setValue(5L, "Development;UnitTest");
+        PushQueue.PushResponse response = configHub.pushQueue.flush();
+        assertEquals(200, response.getResponseCode());
+        assertEquals(0, response.getKeys());
+        assertEquals(3, configHub.pushQueue.getSkippedCount());
+        assertEquals(1, pushes.size());
+    }
+
+    /*
+     * Configuration pulled with value contexts, each key with value 5 from the context.
+     */
+    private static String valueContextConfiguration(String context, String... keys)
+    {
+        StringBuilder sb = new StringBuilder("{\"context\":\"Development;UnitTest\",\"account\":\"ConfigHub\"," +
+                                             "\"repo\":\"UnitTest\",\"properties\":{");
+        for (int i = 0; i < keys.length; i++)
+        {
+            sb.append(0 == i ? "" : ",").append('"').append(keys[i])
+              .append("\":{\"type\":\"Integer\",\"val\":5,\"context\":\"").append(context).append("\"}");
+        }
+        return sb.append("},\"files\":{}}").toString();
+    }
+
+    @Test
+    public void valueOfWiderContextIsPushed()
+    {
+        // Same text as the pulled value, which was resolved from a wildcard context
+        configHub.readJson(valueContextConfiguration("*;*", "key.1"), null, null);
+        configHub.pushQueue.key("key.1").setValue(5, "Development;UnitTest");
+        configHub.pushQueue.flush();
+
+        // Pulled without value contexts, so context of the pulled value is not known
+        configHub.readJson(SnapshotTest.configuration(5), null, null);
+        configHub.pushQueue.key("key.1").setValue(5, "Development;UnitTest");
+        configHub.pushQueue.flush();
+
+        assertEquals(0, configHub.pushQueue.getSkippedCount());
+        assertEquals(2, pushes.size());
+        assertEquals(Collections.singletonMap("key.1", "5"), pushedValues(pushes.get(0)));
+        assertEquals(Collections.singletonMap("key.1", "5"), pushedValues(pushes.get(1)));
+    }
+
+    @Test
+    public void acceptedPushIsReadBackLocally()
+    {
+        configHub.setContext("Development;UnitTest");
+        configHub.readJson(SnapshotTest.configuration(5), "\"v5\"", null);
+        PropertyHandle.IntHandle handle = configHub.properties.intHandle("key.1", -1);
+        Snapshot pinned = configHub.getSnapshot();
+
+        configHub.pushQueue.enableReadYourWrites();
+        configHub.pushQueue.key("key.1").setValue(9, "Development;UnitTest");
+        configHub.pushQueue.key("key.2").setValue(9, "Production;UnitTest");
+        configHub.pushQueue.key("new.flag").setValue(true, "Development;UnitTest");
+        configHub.pushQueue.key("new.ratio").setValueDataType(PushQueue.Key.ValueDataType.Double)
+                          .setValue("0.5", "Development;UnitTest");
+        assertEquals(200, configHub.pushQueue.flush().getResponseCode());
+
+        assertEquals(9, handle.get());
+        assertEquals(new Integer(5), configHub.properties.getInteger("key.2"));
+        assertTrue(configHub.properties.getBoolean("new.flag", false));
+        assertEquals(0.5, configHub.properties.getDouble("new.ratio", 0d), 0d);
+        assertNull(configHub.getSnapshot().eTag);
+
+        assertEquals(new Integer(5), pinned.properties.getInteger("key.1"));
+        assertEquals("5", configHub.files.get("version.txt"));
+    }
+
+    @Test
+    public void concurrentProducersLoseNoUpdates()
+            throws InterruptedException
+    {
+        final int producers = 8;
+        final int keysPerProducer = 50;
+        final int versions = 200;
+
+        // Every 7th push fails without a response, and its changes are returned to the queue
+        final AtomicInteger requests = new AtomicInteger();
+        configHub.setTransport(new InMemoryTransport(request -> {
+            if (requests.incrementAndGet() % 7 == 0)
+                throw new IOException("Connection reset");
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            request.writeBody(body);
+            pushes.add(new JsonParser().parse(new String(body.toByteArray(), StandardCharsets.UTF_8))
+                                       .getAsJsonObject());
+            return InMemoryTransport.response(200, "");
+        }));
+
+        final CountDownLatch finished = new CountDownLatch(producers);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++)
+        {
+            final int producer = p;
+            threads.add(new Thread(() -> {
+                for (int v = 0; v < versions; v++)
+                    for (int k = 0; k < keysPerProducer; k++)
+                        configHub.pushQueue.key("key." + producer + "." + k).setValue(v, "Development");
+
+                finished.countDown();
+            }));
+        }
+
+        AtomicBoolean done = new AtomicBoolean();
+        Thread flusher = new Thread(() -> {
+            while (!done.get())
+                configHub.pushQueue.flush();
+        });
+
+        threads.forEach(Thread::start);
+        flusher.start();
+        assertTrue(finished.await(60, TimeUnit.SECONDS));
+        done.set(true);
+        flusher.join();
+
+        while (0 == configHub.pushQueue.flush().getResponseCode());
+
+        // Pushed versions only move forward, and the last pushed version of every key is the last set
+        Map<String, Integer> pushed = new HashMap<>();
+        for (JsonObject push : pushes)
+        {
+            for (JsonElement element : push.getAsJsonArray("data"))
+            {
+                JsonObject key = element.getAsJsonObject();
+                int version = key.getAsJsonArray("values").get(0).getAsJsonObject().get("value").getAsInt();
+                Integer previous = pushed.put(key.get("key").getAsString(), version);
+                assertTrue(null == previous || previous < version);
+            }
+        }
+
+        assertEquals(producers * keysPerProducer, pushed.size());
+        for (Integer version : pushed.values())
+            assertEquals(versions - 1, version.intValue());
+    }
+
+    private static Map<String, String> pushedValues(JsonObject push)
+    {
+        Map<String, String> pushed = new HashMap<>();
+        for (JsonElement key : push.getAsJsonArray("data"))
+        {
+            JsonArray values = key.getAsJsonObject().getAsJsonArray("values");
+            if (null != values)
+                pushed.put(key.getAsJsonObject().get("key").getAsString(),
+                           values.get(0).getAsJsonObject().get("value").getAsString());
+        }
+        return pushed;
+    }
+
+    @Test
+    public void fullQueueAppliesOverflowPolicy()
+    {
+        PushQueue queue = configHub.pushQueue;
+
+        queue.setCapacity(2, PushQueue.OverflowPolicy.DROP_NEWEST);
+        queue.key("a").setValue("1", "Development");
+        queue.key("b").setValue("1", "Development");
+        queue.key("c").setValue("1", "Development");
+        queue.key("a").setValue("2", "Development");
+        queue.flush();
+        assertEquals(2, queue.getDroppedCount());
+
+        queue.setCapacity(2, PushQueue.OverflowPolicy.DROP_OLDEST);
+        queue.key("a").setValue("3", "Development");
+        queue.key("b").setValue("3", "Development");
+        queue.key("c").setValue("3", "Development");
+        queue.flush();
+
+        queue.setCapacity(2, PushQueue.OverflowPolicy.COALESCE_ONLY);
+        queue.key("a").setValue("4", "Development");
+        queue.key("b").setValue("4", "Development");
+        queue.key("c").setValue("4", "Development");
+        queue.key("b").setValue("5", "Development");
+        queue.flush();
+        assertEquals(1, queue.getDroppedCount());
+
+        assertEquals(3, pushes.size());
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put("a", "1");
+        expected.put("b", "1");
+        assertEquals(expected, pushedValues(pushes.get(0)));
+
+        expected.clear();
+        expected.put("b", "3");
+        expected.put("c", "3");
+        assertEquals(expected, pushedValues(pushes.get(1)));
+
+        expected.clear();
+        expected.put("a", "4");
+        expected.put("b", "5");
+        assertEquals(expected, pushedValues(pushes.get(2)));
+    }
+
+    @Test
+    public void fullQueueBlocksUntilFlushed()
+            throws InterruptedException
+    {
+        configHub.pushQueue.setCapacity(1, PushQueue.OverflowPolicy.BLOCK);
+        configHub.pushQueue.key("a").setValue("1", "Development");
+
+        Thread producer = new Thread(() -> configHub.pushQueue.key("b").setValue("1", "Development"));
+        producer.start();
+        producer.join(100);
+        assertTrue(producer.isAlive());
+
+        configHub.pushQueue.flush();
+        producer.join(1000);
+        assertFalse(producer.isAlive());
+
+        configHub.pushQueue.flush();
+        assertEquals(2, pushes.size());
+        assertEquals(Collections.singletonMap("b", "1"), pushedValues(pushes.get(1)));
+    }
+
+    @Test
+    public void rateLimitSpacesPushes()
+    {
+        configHub.pushQueue.setRateLimit(20, 1);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++)
+        {
+            configHub.pushQueue.key("key").setValue(i, "Development");
+            configHub.pushQueue.flush();
+        }
+
+        // First push takes the burst token, the next two wait 50ms each
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+        assertEquals(3, pushes.size());
+    }
+
+    @Test
+    public void rateLimitAppliesToRetries()
+    {
+        final AtomicInteger attempts = new AtomicInteger();
+        configHub.setRetryPolicy(new RetryPolicy().setMaxAttempts(3).setBackoff(0, 0, TimeUnit.MILLISECONDS))
+                 .setTransport(new InMemoryTransport(request -> InMemoryTransport.response(
+                         attempts.incrementAndGet() < 3 ? 503 : 200, "")));
+        configHub.pushQueue.setRateLimit(20, 1);
+
+        long start = System.nanoTime();
+        configHub.pushQueue.key("key").setValue(1, "Development");
+        assertEquals(200, configHub.pushQueue.flush().getResponseCode());
+
+        // First attempt takes the burst token, the two retries wait 50ms each
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void subscriberDemandFollowsCapacity()
+    {
+        final AtomicInteger requested = new AtomicInteger();
+        configHub.pushQueue.setCapacity(3, PushQueue.OverflowPolicy.BLOCK);
+
+        PushSubscriber subscriber = configHub.pushQueue.subscriber();
+        subscriber.onSubscribe(new PushSubscriber.Subscription()
+        {
+            @Override
+            public void request(long n)
+            {
+                requested.addAndGet((int)n);
+            }
+
+            @Override
+            public void cancel()
+            {
+            }
+        });
+        assertEquals(3, requested.get());
+
+        for (int i = 0; i < 3; i++)
+            subscriber.onNext(new PushQueue.Update("key." + i, i, "Development"));
+        assertEquals(3, requested.get());
+
+        configHub.pushQueue.flush();
+        assertEquals(6, requested.get());
+        assertEquals(3, values(pushes.get(0)));
+        subscriber.cancel();
+    }
+
+    @Test
+    public void flowSubscriberQueuesPublishedChanges()
+            throws Exception
+    {
+        Class<?> publisherType;
+        Class<?> subscriberType;
+        try
+        {
+            // Tests are built for Java 8, so Flow is reached reflectively
+            publisherType = Class.forName("java.util.concurrent.SubmissionPublisher");
+            subscriberType = Class.forName("java.util.concurrent.Flow$Subscriber");
+        }
+        catch (ClassNotFoundException e)
+        {
+            return;
+        }
+
+        // Publisher delivers on the calling thread
+        Object publisher = publisherType.getConstructor(Executor.class, int.class)
+                                        .newInstance((Executor)Runnable::run, 4);
+        Object subscriber = configHub.pushQueue.subscriber().asFlowSubscriber();
+        assertTrue(subscriberType.isInstance(subscriber));
+
+        publisherType.getMethod("subscribe", subscriberType).invoke(publisher, subscriber);
+        for (int i = 0; i < 3; i++)
+            publisherType.getMethod("submit", Object.class)
+                         .invoke(publisher, new PushQueue.Update("key." + i, i, "Development"));
+        publisherType.getMethod("close").invoke(publisher);
+
+        assertEquals(200, configHub.pushQueue.flush().getResponseCode());
+        assertEquals(3, values(pushes.get(0)));
+    }
+
+    @Test
+    public void countersPushOneValuePerInterval()
+            throws InterruptedException
+    {
+        final Counter requests = configHub.pushQueue.counter("count.total", "Production;PushTest");
+        final Counter latency = configHub.pushQueue.counter("latency.max", "Production;PushTest", Counter.Rollup.MAX);
+        assertSame(requests, configHub.pushQueue.counter("count.total", "Production;PushTest"));
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++)
+        {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100000; i++)
+                {
+                    requests.increment();
+                    latency.update(i % 1000);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        configHub.pushQueue.rollUpCounters();
+        configHub.pushQueue.flush();
+
+        requests.update(5);
+        configHub.pushQueue.rollUpCounters();
+        configHub.pushQueue.flush();
+
+        // Nothing updated in this interval
+        configHub.pushQueue.rollUpCounters();
+        configHub.pushQueue.flush();
+
+        assertEquals(2, pushes.size());
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put("count.total", "400000");
+        expected.put("latency.max", "999");
+        assertEquals(expected, pushedValues(pushes.get(0)));
+        assertEquals(Collections.singletonMap("count.total", "5"), pushedValues(pushes.get(1)));
+    }
+
+    @Test
+    public void counterRollupsArePushedOnSchedule()
+            throws InterruptedException
+    {
+        Counter connections = configHub.pushQueue.counter("connections", "Production", Counter.Rollup.LAST);
+        connections.update(12);
+        connections.update(7);
+
+        configHub.pushQueue.enableCounterRollups(20, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 100 && pushes.isEmpty(); i++)
+            Thread.sleep(10);
+        configHub.pushQueue.disableCounterRollups();
+
+        assertEquals(Collections.singletonMap("connections", "7"), pushedValues(pushes.get(0)));
+    }
+
+    @Test(expected = ConfigHubException.class)
+    public void counterRollupCannotChange()
+    {
+        configHub.pushQueue.counter("latency", "Production", Counter.Rollup.MAX);
+        configHub.pushQueue.counter("latency", "Production", Counter.Rollup.MIN);
+    }
+}
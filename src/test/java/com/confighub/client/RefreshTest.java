@@ -0,0 +1,104 @@
+package com.confighub.client;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests conditional pulls, and background refresh.
+ * Test runs against a local HTTP server, and does not require ConfigHub server.
+ */
+public class RefreshTest
+{
+    private static final String CONFIGURATION =
+            "{\"context\":\"Development;UnitTest\",\"account\":\"ConfigHub\",\"repo\":\"UnitTest\"," +
+            "\"properties\":{\"key.1\":{\"type\":\"Integer\",\"val\":1}},\"files\":{}}";
+
+    private LocalServer server;
+    private ConfigHub configHub;
+
+    @After
+    public void teardown()
+    {
+        configHub.stopRefresh();
+        server.close();
+    }
+
+    /*
+     * Server which answers with the configuration and its ETag, or with 304 if the client has it.
+     */
+    private void serve()
+            throws IOException
+    {
+        server = new LocalServer(request -> {
+            if (null != request.getFirst("If-None-Match"))
+                return LocalServer.response(304, "");
+
+            return LocalServer.response(200, CONFIGURATION).header("ETag", "\"v1\"");
+        });
+        configHub = server.configHub();
+    }
+
+    @Test
+    public void pullRevalidatesWithETag()
+            throws IOException
+    {
+        serve();
+
+        configHub.pull();
+        configHub.pull();
+
+        assertEquals(2, server.requests().size());
+        assertNull(server.requests().get(0).getFirst("If-None-Match"));
+        assertEquals("\"v1\"", server.requests().get(1).getFirst("If-None-Match"));
+        assertEquals(new Integer(1), configHub.properties.getInteger("key.1"));
+    }
+
+    @Test
+    public void refreshPullsUntilStopped()
+            throws IOException, InterruptedException
+    {
+        serve();
+
+        configHub.setRefreshInterval(10, TimeUnit.MILLISECONDS);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.requests().size() < 3)
+        {
+            assertTrue("Configuration was not refreshed", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+
+        configHub.stopRefresh();
+        int stopped = server.requests().size();
+        Thread.sleep(100);
+
+        // Only the first refresh downloads the configuration; a refresh already running when stopped
+        // may still finish
+        assertTrue(server.requests().size() <= stopped + 1);
+        assertNull(server.requests().get(0).getFirst("If-None-Match"));
+        assertEquals("\"v1\"", server.requests().get(1).getFirst("If-None-Match"));
+        assertEquals(new Integer(1), configHub.properties.getInteger("key.1"));
+    }
+
+    @Test
+    public void failedRefreshDoesNotCancelNextOnes()
+            throws IOException, InterruptedException
+    {
+        server = new LocalServer(request -> {
+            throw new IllegalStateException("Server error");
+        });
+        configHub = server.configHub();
+
+        configHub.setRefreshInterval(10, TimeUnit.MILLISECONDS);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.requests().size() < 3)
+        {
+            assertTrue("Refresh stopped after a failure", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.confighub.client;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests snapshot publication while configuration is being refreshed concurrently with reads.
+ * Test runs locally, and does not require ConfigHub server.
+ */
+public class SnapshotTest
+{
+    private static final int KEYS = 200;
+
+    private ConfigHub configHub;
+
+    @Before
+    public void setup()
+    {
+        configHub = new ConfigHub("ConfigHub", "UnitTest");
+        configHub.readJson(configuration(0), null, null);
+    }
+
+    /*
+     * Configuration in which every property and file carries the same version.
+     */
+    static String configuration(int version)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"context\":\"Development;UnitTest\",\"account\":\"ConfigHub\",\"repo\":\"UnitTest\",")
+          .append("\"properties\":{");
+
+        for (int i = 0; i < KEYS; i++)
+        {
+            if (i > 0) sb.append(",");
+            sb.append("\"key.").append(i).append("\":{\"type\":\"Integer\",\"val\":").append(version).append("}");
+        }
+
+        sb.append("},\"files\":{\"version.txt\":{\"content\":\"").append(version).append("\"}}}");
+        return sb.toString();
+    }
+
+    @Test
+    public void pinnedSnapshotIsNotAffectedByPull()
+    {
+        Snapshot pinned = configHub.getSnapshot();
+        configHub.readJson(configuration(1), null, null);
+
+        assertEquals(new Integer(0), pinned.properties.getInteger("key.0"));
+        assertEquals("0", pinned.files.get("version.txt"));
+
+        assertEquals(new Integer(1), configHub.properties.getInteger("key.0"));
+        assertEquals("1", configHub.files.get("version.txt"));
+        assertNotSame(pinned, configHub.getSnapshot());
+    }
+
+    @Test
+    public void handlesReadAcrossPulls()
+    {
+        PropertyHandle.IntHandle bound = configHub.properties.intHandle("key.7", -1);
+        PropertyHandle.IntHandle missing = configHub.properties.intHandle("no.such.key", -1);
+        assertEquals(0, bound.get());
+        assertEquals(-1, missing.get());
+
+        Snapshot pinned = configHub.getSnapshot();
+        configHub.readJson(configuration(2), null, null);
+
+        assertEquals(2, bound.get());
+        assertEquals(0, bound.get(pinned));
+        assertEquals(-1, missing.get());
+        assertEquals("2", configHub.properties.stringHandle("key.7", null).get());
+    }
+
+    @Test
+    public void concurrentReadsDuringPulls()
+            throws InterruptedException
+    {
+        final int versions = 500;
+        final int readers = 4;
+
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final CountDownLatch finished = new CountDownLatch(readers);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int r = 0; r < readers; r++)
+        {
+            threads.add(new Thread(() -> {
+                try
+                {
+                    while (!done.get() && null == failure.get())
+                    {
+                        // Live reads never see a missing key
+                        for (int i = 0; i < KEYS; i++)
+                        {
+                            if (null == configHub.properties.getInteger("key." + i))
+                            {
+                                failure.set("Missing key." + i);
+                                return;
+                            }
+                        }
+
+                        // Pinned reads always see a single version
+                        Snapshot snapshot = configHub.getSnapshot();
+                        String version = snapshot.files.get("version.txt");
+                        for (int i = 0; i < KEYS; i++)
+                        {
+                            if (!version.equals(snapshot.properties.get("key." + i)))
+                            {
+                                failure.set("Inconsistent snapshot at key." + i);
+                                return;
+                            }
+                        }
+                    }
+                }
+                catch (RuntimeException e)
+                {
+                    failure.set(e.toString());
+                }
+                finally
+                {
+                    finished.countDown();
+                }
+            }));
+        }
+
+        threads.forEach(Thread::start);
+
+        for (int v = 1; v <= versions && null == failure.get(); v++)
+            configHub.readJson(configuration(v), null, null);
+
+        done.set(true);
+        assertTrue(finished.await(30, TimeUnit.SECONDS));
+
+        assertNull(failure.get());
+        assertEquals(new Integer(versions), configHub.properties.getInteger("key." + (KEYS - 1)));
+    }
+}
@@ -0,0 +1,208 @@
+package com.confighub.client;
+
+import com.confighub.client.error.ConfigHubException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests pull and push requests made through a pluggable transport.
+ * Test runs locally, and does not require ConfigHub server.
+ */
+public class TransportTest
+{
+    private final List<Transport.Request> requests = Collections.synchronizedList(new ArrayList<>());
+    private ConfigHub configHub;
+
+    @Before
+    public void setup()
+    {
+        configHub = new ConfigHub("ConfigHub", "UnitTest")
+                .setContext("Development;UnitTest")
+                .setApplicationName("TransportTest")
+                .setConfighubServerAddress("demo.confighub.com");
+    }
+
+    @Test
+    public void pullRevalidatesWithETag()
+    {
+        configHub.setTransport(new InMemoryTransport(request -> {
+            requests.add(request);
+            if (null != request.getHeader("If-None-Match"))
+                return InMemoryTransport.response(304, "");
+
+            return InMemoryTransport.response(200, SnapshotTest.configuration(3))
+                                    .header("etag", "\"v3\"");
+        }));
+
+        configHub.pull();
+        Snapshot first = configHub.getSnapshot();
+        configHub.pull();
+
+        assertEquals(2, requests.size());
+        assertEquals("GET", requests.get(0).getMethod());
+        assertEquals("https://demo.confighub.com/rest/pull/ConfigHub/UnitTest", requests.get(0).getUrl());
+        assertEquals("Development;UnitTest", requests.get(0).getHeader("Context"));
+        assertNull(requests.get(0).getHeader("If-None-Match"));
+        assertEquals("\"v3\"", requests.get(1).getHeader("If-None-Match"));
+
+        assertSame(first, configHub.getSnapshot());
+        assertEquals(new Integer(3), configHub.properties.getInteger("key.1"));
+    }
+
+    @Test
+    public void pushWritesBody()
+    {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        configHub.setTransport(new InMemoryTransport(request -> {
+            requests.add(request);
+            request.writeBody(body);
+            return InMemoryTransport.response(200, "").header("ETag", "pushed");
+        }));
+
+        configHub.pushQueue.key("db.port").setValue(3306, "Development;UnitTest");
+        PushQueue.PushResponse response = configHub.pushQueue.flush();
+
+        assertEquals(200, response.getResponseCode());
+        assertEquals("pushed", response.getMessage());
+        assertEquals("POST", requests.get(0).getMethod());
+        assertEquals(-1, requests.get(0).getBodyLength());
+        assertTrue(new String(body.toByteArray(), StandardCharsets.UTF_8).contains("\"key\":\"db.port\""));
+        assertEquals(body.size(), configHub.getTransferStats().getBytesSent());
+    }
+
+    @Test
+    public void retriesUnavailableServer()
+    {
+        configHub.setRetryPolicy(new RetryPolicy().setMaxAttempts(3).setBackoff(1, 1, TimeUnit.MILLISECONDS))
+                 .setTransport(new InMemoryTransport(request -> {
+                     requests.add(request);
+                     if (requests.size() < 3)
+                         return InMemoryTransport.response(503, "");
+
+                     return InMemoryTransport.response(200, SnapshotTest.configuration(1));
+                 }));
+
+        configHub.pull();
+
+        assertEquals(3, requests.size());
+        assertEquals(new Integer(1), configHub.properties.getInteger("key.1"));
+    }
+
+    @Test
+    public void openBreakerServesCurrentConfiguration()
+            throws InterruptedException
+    {
+        configHub.setCircuitBreaker(2, 50, TimeUnit.MILLISECONDS)
+                 .setTransport(new InMemoryTransport(request -> {
+                     requests.add(request);
+                     if (requests.size() == 1 || requests.size() > 3)
+                         return InMemoryTransport.response(200, SnapshotTest.configuration(requests.size()));
+
+                     return InMemoryTransport.response(500, "");
+                 }));
+
+        configHub.pull();
+        configHub.pull();
+        configHub.pull();
+        assertEquals(CircuitBreaker.State.OPEN, configHub.getPullCircuitBreaker().getState());
+
+        // Fails fast, and keeps serving the first configuration
+        configHub.pull();
+        assertEquals(3, requests.size());
+        assertEquals(new Integer(1), configHub.properties.getInteger("key.1"));
+
+        Thread.sleep(60);
+        configHub.pull();
+        assertEquals(4, requests.size());
+        assertEquals(CircuitBreaker.State.CLOSED, configHub.getPullCircuitBreaker().getState());
+        assertEquals(new Integer(4), configHub.properties.getInteger("key.1"));
+
+        configHub.setCircuitBreaker(1, 1, TimeUnit.MINUTES);
+        configHub.getPushCircuitBreaker().onFailure();
+        configHub.pushQueue.key("db.port").setValue(3306, "Development;UnitTest");
+        assertEquals(0, configHub.pushQueue.flush().getResponseCode());
+        assertEquals(4, requests.size());
+    }
+
+    @Test
+    public void concurrentPullsShareOneRequest()
+            throws InterruptedException
+    {
+        final CountDownLatch sent = new CountDownLatch(1);
+        final CountDownLatch answer = new CountDownLatch(1);
+        configHub.setTransport(new InMemoryTransport(request -> {
+            requests.add(request);
+            sent.countDown();
+            try
+            {
+                answer.await();
+            }
+            catch (InterruptedException e)
+            {
+                throw new IllegalStateException(e);
+            }
+            return InMemoryTransport.response(200, SnapshotTest.configuration(1));
+        }));
+
+        List<Thread> pulls = new ArrayList<>();
+        for (int i = 0; i < 8; i++)
+            pulls.add(new Thread(configHub::pull));
+
+        pulls.get(0).start();
+        assertTrue(sent.await(5, TimeUnit.SECONDS));
+        for (Thread pull : pulls.subList(1, pulls.size()))
+            pull.start();
+
+        // Every other pull waits for the one in flight
+        for (Thread pull : pulls.subList(1, pulls.size()))
+        {
+            while (Thread.State.WAITING != pull.getState() && Thread.State.TERMINATED != pull.getState())
+                Thread.sleep(1);
+        }
+
+        answer.countDown();
+        for (Thread pull : pulls)
+            pull.join();
+
+        assertEquals(1, requests.size());
+        assertEquals(new Integer(1), configHub.properties.getInteger("key.1"));
+    }
+
+    @Test
+    public void failedPullIsNotReusedWithinFreshness()
+    {
+        configHub.setPullFreshness(1, TimeUnit.MINUTES)
+                 .setTransport(new InMemoryTransport(request -> {
+                     requests.add(request);
+                     if (1 == requests.size())
+                         return InMemoryTransport.response(500, "");
+
+                     return InMemoryTransport.response(200, SnapshotTest.configuration(2));
+                 }));
+
+        try
+        {
+            configHub.pull();
+            fail("Pull which got 500 before any configuration was loaded succeeded");
+        }
+        catch (ConfigHubException expected)
+        {
+        }
+        configHub.pull();
+        configHub.pull();
+
+        // Pull which got 500 is retried; the one which got 200 is reused
+        assertEquals(2, requests.size());
+        assertEquals(new Integer(2), configHub.properties.getInteger("key.1"));
+    }
+}
@@ -0,0 +1,200 @@
+package com.confighub.client;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests typed getters, their defaults, and conversions between value types.
+ * Test runs locally, and does not require ConfigHub server.
+ */
+public class TypedValueTest
+{
+    private static final String CONFIGURATION =
+            "{\"context\":\"Production\",\"account\":\"ConfigHub\",\"repo\":\"UnitTest\",\"properties\":{" +
+            "\"text\":{\"val\":\"hello\"}," +
+            "\"text.int\":{\"val\":\"42\"}," +
+            "\"text.long\":{\"val\":\"5000000000\"}," +
+            "\"text.double\":{\"val\":\"1.5\"}," +
+            "\"text.true\":{\"val\":\"true\"}," +
+            "\"boolean\":{\"type\":\"Boolean\",\"val\":true}," +
+            "\"integer\":{\"type\":\"Integer\",\"val\":7}," +
+            "\"long\":{\"type\":\"Long\",\"val\":5000000000}," +
+            "\"double\":{\"type\":\"Double\",\"val\":2.25}," +
+            "\"float\":{\"type\":\"Float\",\"val\":0.5}," +
+            "\"map\":{\"type\":\"Map\",\"val\":{\"zone\":\"east\"}}," +
+            "\"list\":{\"type\":\"List\",\"val\":[\"a\",\"b\"]}" +
+            "},\"files\":{}}";
+
+    private Properties properties;
+
+    @Before
+    public void setup()
+    {
+        ConfigHub configHub = new ConfigHub("ConfigHub", "UnitTest");
+        configHub.readJson(CONFIGURATION, null, null);
+        properties = configHub.properties;
+    }
+
+    @Test
+    public void typeChecks()
+    {
+        assertTrue(properties.isString("text"));
+        assertTrue(properties.isBoolean("boolean"));
+        assertTrue(properties.isInteger("integer"));
+        assertTrue(properties.isLong("long"));
+        assertTrue(properties.isDouble("double"));
+        assertTrue(properties.isFloat("float"));
+        assertTrue(properties.isMap("map"));
+        assertTrue(properties.isList("list"));
+
+        // Boolean is not an Integer, and List is not a Map
+        assertFalse(properties.isInteger("boolean"));
+        assertFalse(properties.isMap("list"));
+        assertFalse(properties.isList("map"));
+        assertFalse(properties.isString("integer"));
+        assertFalse(properties.isInteger("missing"));
+    }
+
+    @Test
+    public void boxedGetters()
+    {
+        assertEquals(Boolean.TRUE, properties.getBoolean("boolean"));
+        assertEquals(Integer.valueOf(7), properties.getInteger("integer"));
+        assertEquals(Long.valueOf(5000000000L), properties.getLong("long"));
+        assertEquals(Double.valueOf(2.25), properties.getDouble("double"));
+        assertEquals(Float.valueOf(0.5f), properties.getFloat("float"));
+        assertEquals(Collections.singletonMap("zone", "east"), properties.getMap("map"));
+        assertEquals(Arrays.asList("a", "b"), properties.getList("list"));
+
+        // Numbers widen
+        assertEquals(Long.valueOf(7), properties.getLong("integer"));
+        assertEquals(Double.valueOf(7), properties.getDouble("integer"));
+
+        assertNull(properties.getInteger("missing"));
+        assertEquals(Integer.valueOf(3), properties.getInteger("missing", 3));
+        assertEquals("fallback", properties.get("missing", "fallback"));
+    }
+
+    @Test
+    public void textIsParsedOnRead()
+    {
+        assertEquals(Integer.valueOf(42), properties.getInteger("text.int"));
+        assertEquals(Long.valueOf(42), properties.getLong("text.int"));
+        assertEquals(Double.valueOf(42), properties.getDouble("text.int"));
+        assertEquals(Float.valueOf(42), properties.getFloat("text.int"));
+        assertEquals(Long.valueOf(5000000000L), properties.getLong("text.long"));
+        assertEquals(Boolean.TRUE, properties.getBoolean("text.true"));
+        assertEquals(Boolean.FALSE, properties.getBoolean("text"));
+
+        // Parsed once, and every read after that agrees with the first
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals(42, properties.getInt("text.int", 0));
+            assertEquals(-1, properties.getInt("text.long", -1));
+            assertEquals(5000000000L, properties.getLong("text.long", 0L));
+            assertEquals(-1, properties.getInt("text.double", -1));
+            assertEquals(1.5, properties.getDouble("text.double", 0d), 0);
+            assertEquals(1.5f, properties.getFloat("text.double", 0f), 0);
+        }
+
+        try
+        {
+            properties.getInteger("text");
+            fail("Text which is not a number was read as Integer");
+        }
+        catch (NumberFormatException expected)
+        {
+        }
+    }
+
+    @Test
+    public void primitiveGettersReturnDefaults()
+    {
+        assertEquals(7, properties.getInt("integer", 0));
+        assertEquals(5000000000L, properties.getLong("long", 0L));
+        assertEquals(2.25, properties.getDouble("double", 0d), 0);
+        assertEquals(0.5f, properties.getFloat("float", 0f), 0);
+        assertTrue(properties.getBoolean("boolean", false));
+
+        // Missing keys and values of another type do not throw
+        assertEquals(-1, properties.getInt("missing", -1));
+        assertEquals(-1, properties.getInt("text", -1));
+        assertEquals(-1, properties.getInt("map", -1));
+        assertEquals(-1L, properties.getLong("list", -1L));
+        assertEquals(-1d, properties.getDouble("boolean", -1d), 0);
+        assertTrue(properties.getBoolean("missing", true));
+        assertTrue(properties.getBoolean("integer", true));
+    }
+
+    @Test
+    public void findReturnsCachedOptionals()
+    {
+        assertEquals(OptionalInt.of(7), properties.findInt("integer"));
+        assertEquals(OptionalLong.of(42), properties.findLong("text.int"));
+        assertEquals(OptionalDouble.of(1.5), properties.findDouble("text.double"));
+        assertEquals(Optional.of(Boolean.TRUE), properties.findBoolean("boolean"));
+
+        assertFalse(properties.findInt("text").isPresent());
+        assertFalse(properties.findInt("missing").isPresent());
+        assertFalse(properties.findLong("map").isPresent());
+        assertFalse(properties.findBoolean("list").isPresent());
+
+        assertSame(properties.findInt("integer"), properties.findInt("integer"));
+        assertSame(properties.findLong("text.int"), properties.findLong("text.int"));
+        assertSame(properties.findDouble("text.double"), properties.findDouble("text.double"));
+    }
+
+    @Test
+    public void typeMismatchNamesBothTypes()
+    {
+        try
+        {
+            properties.getBoolean("integer");
+            fail("Integer was read as Boolean");
+        }
+        catch (ClassCastException e)
+        {
+            assertEquals("Integer value cannot be read as Boolean", e.getMessage());
+        }
+
+        try
+        {
+            properties.getMap("list");
+            fail("List was read as Map");
+        }
+        catch (ClassCastException e)
+        {
+            assertEquals("List value cannot be read as Map", e.getMessage());
+        }
+    }
+
+    @Test
+    public void collectionsAsTextAndReadOnly()
+    {
+        Map<String, String> map = properties.getMap("map");
+        List<String> list = properties.getList("list");
+        assertSame(map, properties.getMap("map"));
+        assertEquals("{zone=east}", properties.get("map"));
+        assertEquals("[a, b]", properties.get("list"));
+
+        try
+        {
+            list.add("c");
+            fail("List value was modified");
+        }
+        catch (UnsupportedOperationException expected)
+        {
+        }
+    }
+}